@@ -24,6 +24,7 @@ import java.awt.*;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -38,7 +39,6 @@ public class MainClass {
     private static final String GET_ASC_II_64_MD_5 = "62a56c26e1afa7c4fa3f441aadb9d515";
     private static final String HOTKEY_LISTENER_64_MD_5 = "a212cc427a89a614402e59897c82e50d";
     private static final String IS_LOCAL_DISK_64_MD_5 = "f8a71d3496d8cc188713d521e6dfa2b2";
-    private static final String FILE_SEARCHER_USN_64_MD_5 = "1fef7fdf8ebde3846afe0e442f47f6ef";
     private static final String SQLITE3_64_MD_5 = "703bd51c19755db49c9070ceb255dfe5";
     private static final String UPDATER_BAT_64_MD_5 = "357d7cc1cf023cb6c90f73926c6f2f55";
     private static final String GET_HANDLE_64_MD_5 = "ee14698d5c8c8b55110d53012f8b7739";
@@ -184,8 +184,54 @@ public class MainClass {
         }
     }
 
+    /**
+     * 保存数据库自身的信息，如当前使用的分区方式
+     */
+    private static void createDbInfoTable() throws SQLException {
+        try (PreparedStatement pStmt = SQLiteUtil.getPreparedStatement("CREATE TABLE IF NOT EXISTS dbInfo(KEY text unique, VALUE text);")) {
+            pStmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 旧版本数据库的文件表中没有新增的列，添加后旧记录使用默认值
+     * 表不存在时不处理，更新索引时会使用新的结构重新建表
+     */
+    private static void addMissingColumns() throws SQLException {
+        for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+            addColumnIfNotExist("list" + i, "ISDIR", "INT DEFAULT -1");
+            addColumnIfNotExist("list" + i, "PINYIN", "text DEFAULT NULL");
+        }
+        addColumnIfNotExist("cache", "ISDIR", "INT DEFAULT -1");
+    }
+
+    private static void addColumnIfNotExist(String tableName, String columnName, String definition) throws SQLException {
+        boolean isTableExist = false;
+        try (Statement stmt = SQLiteUtil.getStatement();
+             ResultSet resultSet = stmt.executeQuery("PRAGMA table_info(" + tableName + ");")) {
+            while (resultSet.next()) {
+                isTableExist = true;
+                if (columnName.equalsIgnoreCase(resultSet.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        if (!isTableExist) {
+            return;
+        }
+        try (Statement stmt = SQLiteUtil.getStatement()) {
+            stmt.executeUpdate("ALTER TABLE " + tableName + " ADD COLUMN " + columnName + " " + definition + ";");
+        }
+    }
+
     private static void createCacheTable() throws SQLException {
-        try (PreparedStatement pStmt = SQLiteUtil.getPreparedStatement("CREATE TABLE IF NOT EXISTS cache(PATH text unique);")) {
+        try (PreparedStatement pStmt = SQLiteUtil.getPreparedStatement("CREATE TABLE IF NOT EXISTS cache(PATH text unique, ISDIR INT DEFAULT -1);")) {
+            pStmt.executeUpdate();
+        }
+    }
+
+    private static void createHistoryTable() throws SQLException {
+        try (PreparedStatement pStmt = SQLiteUtil.getPreparedStatement("CREATE TABLE IF NOT EXISTS history(PATH text unique, OPEN_COUNT INT, LAST_OPEN_TIME INT);")) {
             pStmt.executeUpdate();
         }
     }
@@ -242,7 +288,10 @@ public class MainClass {
     private static void initDatabase() throws SQLException {
         SQLiteUtil.initConnection("jdbc:sqlite:data.db");
         createCacheTable();
+        createHistoryTable();
         createPriorityTable();
+        createDbInfoTable();
+        addMissingColumns();
     }
 
     private static void checkPluginInfo() {
@@ -255,7 +304,7 @@ public class MainClass {
     private static void checkPluginVersion() {
         if (AllConfigs.getInstance().isCheckUpdateStartup()) {
             CachedThreadPoolUtil cachedThreadPoolUtil = CachedThreadPoolUtil.getInstance();
-            cachedThreadPoolUtil.executeTask(() -> {
+            cachedThreadPoolUtil.executeIoTask(() -> {
                 StringBuilder notLatestPluginsBuilder = new StringBuilder();
                 PluginService pluginService = PluginService.getInstance();
                 pluginService.checkAllPluginsVersion(notLatestPluginsBuilder);
@@ -508,7 +557,6 @@ public class MainClass {
         copyOrIgnoreFile("user/getAscII.dll", "/win32-native/getAscII.dll", GET_ASC_II_64_MD_5);
         copyOrIgnoreFile("user/hotkeyListener.dll", "/win32-native/hotkeyListener.dll", HOTKEY_LISTENER_64_MD_5);
         copyOrIgnoreFile("user/isLocalDisk.dll", "/win32-native/isLocalDisk.dll", IS_LOCAL_DISK_64_MD_5);
-        copyOrIgnoreFile("user/fileSearcherUSN.exe", "/win32-native/fileSearcherUSN.exe", FILE_SEARCHER_USN_64_MD_5);
         copyOrIgnoreFile("user/sqlite3.dll", "/win32-native/sqlite3.dll", SQLITE3_64_MD_5);
         copyOrIgnoreFile("user/getHandle.dll", "/win32-native/getHandle.dll", GET_HANDLE_64_MD_5);
         copyOrIgnoreFile("user/daemonProcess.exe", "/win32-native/daemonProcess.exe", DAEMON_PROCESS_64_MD_5);
@@ -33,6 +33,7 @@ import file.engine.event.handler.impl.plugin.SetPluginsCurrentThemeEvent;
 import file.engine.event.handler.impl.taskbar.ShowTrayIconEvent;
 import file.engine.services.download.DownloadManager;
 import file.engine.services.download.DownloadService;
+import file.engine.services.index.partition.HashPartitioner;
 import file.engine.utils.RegexUtil;
 import file.engine.utils.TranslateUtil;
 
@@ -386,6 +387,24 @@ public class AllConfigs {
         return configEntity.getBorderThickness();
     }
 
+    /**
+     * 是否使用列式索引文件代替扫描数据库
+     *
+     * @return true or false
+     */
+    public boolean isUseColumnarIndex() {
+        return configEntity.isUseColumnarIndex();
+    }
+
+    /**
+     * 获取文件路径分区方式
+     *
+     * @return ascii, hash或firstChar
+     */
+    public String getPartitioner() {
+        return configEntity.getPartitioner();
+    }
+
     public boolean isCheckUpdateStartup() {
         return configEntity.isCheckUpdateStartup();
     }
@@ -489,6 +508,14 @@ public class AllConfigs {
         configEntity.setAttachExplorer((boolean) getFromJson(settingsInJson, "isAttachExplorer", true));
     }
 
+    private void readUseColumnarIndex(JSONObject settingsInJson) {
+        configEntity.setUseColumnarIndex((boolean) getFromJson(settingsInJson, "isUseColumnarIndex", false));
+    }
+
+    private void readPartitioner(JSONObject settingsInJson) {
+        configEntity.setPartitioner((String) getFromJson(settingsInJson, "partitioner", HashPartitioner.NAME));
+    }
+
     private void readResponseCtrl(JSONObject settingsInJson) {
         configEntity.setDoubleClickCtrlOpen((boolean) getFromJson(settingsInJson, "doubleClickCtrlOpen", true));
     }
@@ -669,6 +696,8 @@ public class AllConfigs {
         readDisks(settingsInJson);
         readCheckUpdateStartup(settingsInJson);
         readBorderThickness(settingsInJson);
+        readUseColumnarIndex(settingsInJson);
+        readPartitioner(settingsInJson);
         initUpdateAddress();
         initCmdSetSettings();
     }
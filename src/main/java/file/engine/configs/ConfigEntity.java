@@ -103,4 +103,10 @@ class ConfigEntity {
 
     @JSONField(name = "isAttachExplorer")
     private boolean isAttachExplorer;
+
+    @JSONField(name = "isUseColumnarIndex")
+    private boolean isUseColumnarIndex;
+
+    @JSONField(name = "partitioner")
+    private String partitioner;
 }
@@ -1,5 +1,6 @@
 package file.engine.event.handler;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -8,6 +9,8 @@ public class Event {
     private final AtomicBoolean isFailed = new AtomicBoolean(false);
     private final AtomicInteger executeTimes = new AtomicInteger(0);
     private final AtomicBoolean isBlock = new AtomicBoolean(false);
+    private final AtomicBoolean isInQueue = new AtomicBoolean(false);
+    private final CompletableFuture<Event> future = new CompletableFuture<>();
     private Object returnValue;
 
     protected void incrementExecuteTimes() {
@@ -36,10 +39,34 @@ public class Event {
 
     protected void setFailed() {
         isFailed.set(true);
+        future.complete(this);
     }
 
     protected void setFinished() {
         isFinished.set(true);
+        future.complete(this);
+    }
+
+    /**
+     * 任务执行完成或失败时完成，可以用于等待或者添加后续操作
+     *
+     * @return future，结果为任务本身
+     */
+    public CompletableFuture<Event> getFuture() {
+        return future;
+    }
+
+    /**
+     * 标记任务已经放入队列
+     *
+     * @return false如果任务已经在队列中
+     */
+    boolean setInQueue() {
+        return isInQueue.compareAndSet(false, true);
+    }
+
+    void clearInQueue() {
+        isInQueue.set(false);
     }
 
     public void setReturnValue(Object obj) {
@@ -8,27 +8,34 @@ import file.engine.event.handler.impl.stop.RestartEvent;
 import file.engine.utils.CachedThreadPoolUtil;
 import file.engine.utils.clazz.scan.ClassScannerUtil;
 
+import java.lang.invoke.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class EventManagement {
     private static volatile EventManagement instance = null;
     private final AtomicBoolean exit = new AtomicBoolean(false);
-    private final ConcurrentLinkedQueue<Event> blockEventQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<Event> asyncEventQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentHashMap<Class<? extends Event>, Method> EVENT_HANDLER_MAP = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Class<? extends Event>, ConcurrentLinkedQueue<Method>> EVENT_LISTENER_MAP = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Event> blockEventQueue = new LinkedBlockingQueue<>();
+    private final LinkedBlockingQueue<Event> asyncEventQueue = new LinkedBlockingQueue<>();
+    //没有handler的任务延迟后重新放入队列
+    private final DelayQueue<RetryEvent> retryEventQueue = new DelayQueue<>();
+    private final ConcurrentHashMap<Class<? extends Event>, Consumer<Event>> EVENT_HANDLER_MAP = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<? extends Event>, ConcurrentLinkedQueue<Runnable>> EVENT_LISTENER_MAP = new ConcurrentHashMap<>();
 
     private final int MAX_TASK_RETRY_TIME = 20;
+    private static final long RETRY_DELAY_MILLIS = 5;
+    private static final long WAIT_EVENT_TIMEOUT_MILLIS = 10 * 1000;
+    //线程等待任务的超时时间，超时后检查程序是否已经退出
+    private static final long POLL_TIMEOUT_MILLIS = 100;
 
     private EventManagement() {
         startBlockEventHandler();
         startAsyncEventHandler();
+        startRetryEventHandler();
     }
 
     public static EventManagement getInstance() {
@@ -50,17 +57,10 @@ public class EventManagement {
      */
     public boolean waitForEvent(Event event) {
         try {
-            int timeout = 200;
-            int count = 0;
-            while (!event.isFailed() && !event.isFinished()) {
-                count++;
-                if (count > timeout) {
-                    System.err.println("等待" + event + "超时");
-                    break;
-                }
-                TimeUnit.MILLISECONDS.sleep(50);
-            }
-        } catch (InterruptedException ignored) {
+            event.getFuture().get(WAIT_EVENT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("等待" + event + "超时");
+        } catch (InterruptedException | ExecutionException ignored) {
         }
         return event.isFailed();
     }
@@ -89,15 +89,15 @@ public class EventManagement {
             }
             return false;
         } else {
-            Method eventHandler = EVENT_HANDLER_MAP.get(event.getClass());
+            Consumer<Event> eventHandler = EVENT_HANDLER_MAP.get(event.getClass());
             if (eventHandler != null) {
                 try {
-                    eventHandler.invoke(null, event);
-                } catch (IllegalAccessException | InvocationTargetException e) {
+                    eventHandler.accept(event);
+                } catch (Exception e) {
                     e.printStackTrace();
                 }
                 event.setFinished();
-                cachedThreadPoolUtil.executeTask(() ->
+                cachedThreadPoolUtil.executeIoTask(() ->
                         doAllMethod(EVENT_LISTENER_MAP.get(event.getClass())));
                 return false;
             }
@@ -111,14 +111,14 @@ public class EventManagement {
         return stacktrace[3];
     }
 
-    private void doAllMethod(ConcurrentLinkedQueue<Method> todo) {
+    private void doAllMethod(ConcurrentLinkedQueue<Runnable> todo) {
         if (todo == null) {
             return;
         }
-        for (Method each : todo) {
+        for (Runnable each : todo) {
             try {
-                each.invoke(null);
-            } catch (IllegalAccessException | InvocationTargetException e) {
+                each.run();
+            } catch (Exception e) {
                 e.printStackTrace();
             }
         }
@@ -135,12 +135,11 @@ public class EventManagement {
             System.err.println("尝试放入任务" + event.toString() + "---来自" + getStackTraceElement().toString());
         }
         if (!exit.get()) {
-            if (event.isBlock()) {
-                if (!blockEventQueue.contains(event)) {
+            //同一个任务实例已经在队列中时不重复添加
+            if (event.setInQueue()) {
+                if (event.isBlock()) {
                     blockEventQueue.add(event);
-                }
-            } else {
-                if (!asyncEventQueue.contains(event)) {
+                } else {
                     asyncEventQueue.add(event);
                 }
             }
@@ -200,7 +199,14 @@ public class EventManagement {
         if (IsDebug.isDebug()) {
             System.err.println("注册监听器" + eventType.toString());
         }
-        EVENT_HANDLER_MAP.put(eventType, handler);
+        MethodHandle handle = createInvoker(handler, MethodType.methodType(void.class, Event.class));
+        EVENT_HANDLER_MAP.put(eventType, event -> {
+            try {
+                handle.invokeExact(event);
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     /**
@@ -209,13 +215,40 @@ public class EventManagement {
      * @param eventType 需要监听的任务类型
      */
     private void registerListener(Class<? extends Event> eventType, Method todo) {
-        ConcurrentLinkedQueue<Method> queue = EVENT_LISTENER_MAP.get(eventType);
+        MethodHandle handle = createInvoker(todo, MethodType.methodType(void.class));
+        Runnable listener = () -> {
+            try {
+                handle.invokeExact();
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        };
+        ConcurrentLinkedQueue<Runnable> queue = EVENT_LISTENER_MAP.get(eventType);
         if (queue == null) {
             queue = new ConcurrentLinkedQueue<>();
-            queue.add(todo);
+            queue.add(listener);
             EVENT_LISTENER_MAP.put(eventType, queue);
         } else {
-            queue.add(todo);
+            queue.add(listener);
+        }
+    }
+
+    /**
+     * 查找静态方法的MethodHandle，并转换为调用处使用的类型，调用时使用invokeExact，不需要反射和参数转换
+     * 不使用LambdaMetafactory，privateLookupIn得到的Lookup在JDK14以上不能用于生成调用类
+     *
+     * @param method 静态方法
+     * @param type   调用处使用的类型
+     * @return 已经转换类型的MethodHandle
+     */
+    private static MethodHandle createInvoker(Method method, MethodType type) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup());
+            return lookup.findStatic(declaringClass, method.getName(),
+                    MethodType.methodType(method.getReturnType(), method.getParameterTypes())).asType(type);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new RuntimeException("无法访问方法" + method, e);
         }
     }
 
@@ -227,27 +260,29 @@ public class EventManagement {
                     final boolean isDebug = IsDebug.isDebug();
                     Event event;
                     while (isEventHandlerNotExit()) {
-                        //取出任务
-                        if ((event = asyncEventQueue.poll()) == null) {
-                            TimeUnit.MILLISECONDS.sleep(5);
+                        //取出任务，没有任务时线程挂起
+                        if ((event = asyncEventQueue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) == null) {
                             continue;
                         }
                         //判断任务是否执行完成或者失败
                         if (event.isFinished() || event.isFailed()) {
+                            event.clearInQueue();
                             continue;
                         } else if (event.getExecuteTimes() < MAX_TASK_RETRY_TIME) {
                             //判断是否超过最大次数
                             if (executeTaskFailed(event)) {
                                 System.err.println("异步任务执行失败---" + event);
-                                asyncEventQueue.add(event);
+                                retryEventQueue.add(new RetryEvent(event));
+                            } else {
+                                event.clearInQueue();
                             }
                         } else {
                             event.setFailed();
+                            event.clearInQueue();
                             if (isDebug) {
                                 System.err.println("任务超时---" + event);
                             }
                         }
-                        TimeUnit.MILLISECONDS.sleep(5);
                     }
                     if (isDebug) {
                         System.err.println("******异步任务执行线程退出******");
@@ -262,34 +297,79 @@ public class EventManagement {
         return (!exit.get() || !blockEventQueue.isEmpty() || !asyncEventQueue.isEmpty());
     }
 
+    /**
+     * 等待handler注册的任务，延迟后放回原来的队列
+     */
+    private void startRetryEventHandler() {
+        CachedThreadPoolUtil.getInstance().executeTask(() -> {
+            try {
+                RetryEvent retryEvent;
+                while (isEventHandlerNotExit()) {
+                    if ((retryEvent = retryEventQueue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                        continue;
+                    }
+                    Event event = retryEvent.event;
+                    if (event.isBlock()) {
+                        blockEventQueue.add(event);
+                    } else {
+                        asyncEventQueue.add(event);
+                    }
+                }
+            } catch (InterruptedException ignored) {
+            }
+        });
+    }
+
+    private static class RetryEvent implements Delayed {
+        private final Event event;
+        private final long retryTime;
+
+        private RetryEvent(Event event) {
+            this.event = event;
+            this.retryTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY_MILLIS);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(retryTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
     private void startBlockEventHandler() {
         CachedThreadPoolUtil.getInstance().executeTask(() -> {
             try {
                 Event event;
                 final boolean isDebug = IsDebug.isDebug();
                 while (isEventHandlerNotExit()) {
-                    //取出任务
-                    if ((event = blockEventQueue.poll()) == null) {
-                        TimeUnit.MILLISECONDS.sleep(5);
+                    //取出任务，没有任务时线程挂起
+                    if ((event = blockEventQueue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) == null) {
                         continue;
                     }
                     //判断任务是否已经被执行或者失败
                     if (event.isFinished() || event.isFailed()) {
+                        event.clearInQueue();
                         continue;
                     }
                     //判断任务是否超过最大执行次数
                     if (event.getExecuteTimes() < MAX_TASK_RETRY_TIME) {
                         if (executeTaskFailed(event)) {
                             System.err.println("同步任务执行失败---" + event);
-                            blockEventQueue.add(event);
+                            retryEventQueue.add(new RetryEvent(event));
+                        } else {
+                            event.clearInQueue();
                         }
                     } else {
                         event.setFailed();
+                        event.clearInQueue();
                         if (isDebug) {
                             System.err.println("任务超时---" + event);
                         }
                     }
-                    TimeUnit.MILLISECONDS.sleep(5);
                 }
                 if (isDebug) {
                     System.err.println("******同步任务执行线程退出******");
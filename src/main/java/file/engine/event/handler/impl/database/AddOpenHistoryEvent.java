@@ -0,0 +1,8 @@
+package file.engine.event.handler.impl.database;
+
+public class AddOpenHistoryEvent extends DatabaseEvent {
+
+    public AddOpenHistoryEvent(String path) {
+        super(path);
+    }
+}
@@ -0,0 +1,20 @@
+package file.engine.event.handler.impl.database;
+
+import java.util.LinkedHashSet;
+
+/**
+ * 删除文件夹以及文件夹中的所有文件和子文件夹
+ */
+public class DeleteFolderFromDatabaseEvent extends DatabaseEvent {
+    private final LinkedHashSet<String> folders;
+
+    public Object[] getFolders() {
+        return folders.toArray();
+    }
+
+    public DeleteFolderFromDatabaseEvent(LinkedHashSet<String> folders) {
+        super(null);
+        this.folders = folders;
+        this.setBlock();
+    }
+}
@@ -0,0 +1,9 @@
+package file.engine.event.handler.impl.database;
+
+import file.engine.event.handler.Event;
+
+/**
+ * 停止正在进行的索引重建，更新索引时同步任务线程被占用，所以不能作为同步任务
+ */
+public class StopUpdateDatabaseEvent extends Event {
+}
@@ -0,0 +1,11 @@
+package file.engine.event.handler.impl.database;
+
+import file.engine.event.handler.Event;
+
+public class UpdateDatabaseProgressEvent extends Event {
+    public final long indexedNum;
+
+    public UpdateDatabaseProgressEvent(long indexedNum) {
+        this.indexedNum = indexedNum;
+    }
+}
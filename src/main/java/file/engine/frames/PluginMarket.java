@@ -196,7 +196,7 @@ public class PluginMarket {
             }
 
             void doSearch() {
-                cachedThreadPoolUtil.executeTask(() -> {
+                cachedThreadPoolUtil.executeIoTask(() -> {
                     String tmp;
                     HashSet<String> pluginSet = new HashSet<>();
                     if ((tmp = searchKeywords) == null || tmp.isEmpty()) {
@@ -268,7 +268,7 @@ public class PluginMarket {
 
             void doGet() {
                 isStartGetPluginInfo.set(false);
-                cachedThreadPoolUtil.executeTask(() -> {
+                cachedThreadPoolUtil.executeIoTask(() -> {
                     if (isStartGetPluginInfo.get()) {
                         //用户重新点击
                         return;
@@ -12,19 +12,22 @@ import file.engine.dllInterface.GetHandle;
 import file.engine.dllInterface.IsLocalDisk;
 import file.engine.event.handler.Event;
 import file.engine.event.handler.EventManagement;
+import file.engine.event.handler.impl.database.AddOpenHistoryEvent;
 import file.engine.event.handler.impl.database.AddToCacheEvent;
-import file.engine.event.handler.impl.database.DeleteFromCacheEvent;
 import file.engine.event.handler.impl.database.UpdateDatabaseEvent;
+import file.engine.event.handler.impl.database.UpdateDatabaseProgressEvent;
 import file.engine.event.handler.impl.frame.searchBar.*;
 import file.engine.event.handler.impl.frame.settingsFrame.AddCacheEvent;
-import file.engine.event.handler.impl.frame.settingsFrame.IsCacheExistEvent;
 import file.engine.event.handler.impl.frame.settingsFrame.ShowSettingsFrameEvent;
 import file.engine.event.handler.impl.monitor.disk.StartMonitorDiskEvent;
 import file.engine.event.handler.impl.stop.RestartEvent;
 import file.engine.event.handler.impl.taskbar.ShowTaskBarMessageEvent;
 import file.engine.services.DatabaseService;
+import file.engine.services.monitor.JavaFileMonitor;
 import file.engine.services.plugin.system.Plugin;
 import file.engine.services.plugin.system.PluginService;
+import file.engine.services.search.CancellationToken;
+import file.engine.services.search.SearchEngine;
 import file.engine.utils.*;
 import file.engine.utils.file.CopyFileUtil;
 
@@ -41,29 +44,23 @@ import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
 public class SearchBar {
-    private final AtomicBoolean isCacheAndPrioritySearched = new AtomicBoolean(false);
     private final AtomicBoolean isLockMouseMotion = new AtomicBoolean(false);
     private final AtomicBoolean isOpenLastFolderPressed = new AtomicBoolean(false);
     private final AtomicBoolean isRunAsAdminPressed = new AtomicBoolean(false);
     private final AtomicBoolean isCopyPathPressed = new AtomicBoolean(false);
     private final AtomicBoolean startSignal = new AtomicBoolean(false);
     private final AtomicBoolean isUserPressed = new AtomicBoolean(false);
-    private final AtomicBoolean isDatabaseUpdated = new AtomicBoolean(false);
+    //重建索引时已经遍历的文件数量
+    private final AtomicLong updatingIndexedNum = new AtomicLong(0);
     private final AtomicBoolean isMouseDraggedInWindow = new AtomicBoolean(false);
     private final AtomicBoolean isNotSqlInitialized = new AtomicBoolean(true);
     private final AtomicBoolean isBorderThreadNotExist = new AtomicBoolean(true);
@@ -93,7 +90,6 @@ public class SearchBar {
     private final AtomicBoolean isWaiting = new AtomicBoolean(false);
     private final Pattern semicolon;
     private final Pattern colon;
-    private final Pattern slash;
     private final Pattern blank;
     private volatile Enums.RunningMode runningMode;
     private volatile Enums.ShowingSearchBarMode showingMode;
@@ -101,19 +97,13 @@ public class SearchBar {
     private final int iconSideLength;
     private volatile long visibleStartTime = 0;  //记录窗口开始可见的事件，窗口默认最短可见时间0.5秒，防止窗口快速闪烁
     private volatile long firstResultStartShowingTime = 0;  //记录开始显示结果的时间，用于防止刚开始移动到鼠标导致误触
-    private final Set<String> tempResults;  //在优先文件夹和数据库cache未搜索完时暂时保存结果，搜索完后会立即被转移到listResults
-    private final ConcurrentLinkedQueue<String> tableQueue;  //保存哪些表需要被查
     private final CopyOnWriteArrayList<String> listResults;  //保存从数据库中找出符合条件的记录（文件路径）
-    private final Set<TableNameWeightInfo> tableSet;    //保存从0-40数据库的表，使用频率和名字对应，使经常使用的表最快被搜索到
-    private final ConcurrentLinkedQueue<Integer> priorityQueue;
-    private volatile String[] searchCase;
-    private volatile String searchText;
-    private volatile String[] keywords;
+    private volatile CancellationToken searchToken = new CancellationToken();  //当前搜索的取消标记，重新输入时取消上一次搜索
     private final DatabaseService databaseService;
     private final AtomicInteger listResultsNum;  //保存当前listResults中有多少个结果
-    private final AtomicInteger tempResultNum;  //保存当前tempResults中有多少个结果
     private final AtomicInteger currentLabelSelectedPosition;   //保存当前是哪个label被选中 范围 0 - 7
     private volatile Plugin currentUsingPlugin;
+    private volatile FileMonitor fileMonitor;
     private final JPopupMenu menu = new JPopupMenu();
     private final JMenuItem open;
     private final JMenuItem openAsAdmin;
@@ -124,26 +114,11 @@ public class SearchBar {
 
     private static volatile SearchBar instance = null;
 
-    private static class TableNameWeightInfo {
-        private final String tableName;
-        private final AtomicLong weight;
-
-        private TableNameWeightInfo(String tableName) {
-            this.tableName = tableName;
-            this.weight = new AtomicLong(0);
-        }
-    }
-
     private SearchBar() {
         listResults = new CopyOnWriteArrayList<>();
-        tempResults = ConcurrentHashMap.newKeySet();
-        tableQueue = new ConcurrentLinkedQueue<>();
-        tableSet = ConcurrentHashMap.newKeySet();
-        priorityQueue = new ConcurrentLinkedQueue<>();
         searchBar = new JFrame();
         currentResultCount = new AtomicInteger(0);
         listResultsNum = new AtomicInteger(0);
-        tempResultNum = new AtomicInteger(0);
         TranslateUtil translateUtil = TranslateUtil.getInstance();
         open = new JMenuItem(translateUtil.getTranslation("Open"));
         openAsAdmin = new JMenuItem(translateUtil.getTranslation("Open as administrator"));
@@ -159,7 +134,6 @@ public class SearchBar {
         currentLabelSelectedPosition = new AtomicInteger(0);
         semicolon = RegexUtil.semicolon;
         colon = RegexUtil.colon;
-        slash = RegexUtil.slash;
         blank = RegexUtil.blank;
         JPanel panel = new JPanel();
         Color transparentColor = new Color(0, 0, 0, 0);
@@ -247,10 +221,6 @@ public class SearchBar {
         panel.add(label7);
         panel.add(label8);
 
-        initTableMap();
-
-        initPriorityQueue();
-
         initMenuItems();
 
         //开启所有线程
@@ -439,32 +409,6 @@ public class SearchBar {
         });
     }
 
-    private void initTableMap() {
-        for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
-            tableSet.add(new TableNameWeightInfo("list" + i));
-        }
-    }
-
-    private TableNameWeightInfo getInfoByName(String tableName) {
-        for (TableNameWeightInfo each : tableSet) {
-            if (each.tableName.equals(tableName)) {
-                return each;
-            }
-        }
-        return null;
-    }
-
-    private void updateTableWeight(String tableName, long weight) {
-        TableNameWeightInfo origin = getInfoByName(tableName);
-        if (origin == null) {
-            return;
-        }
-        origin.weight.addAndGet(weight);
-        if (IsDebug.isDebug()) {
-            System.err.println("已更新" + tableName + "权重, 之前为" + origin + "***增加了" + weight);
-        }
-    }
-
     /**
      * 初始化label
      *
@@ -667,7 +611,7 @@ public class SearchBar {
         robotUtil.mouseClicked(x, y, 1, InputEvent.BUTTON1_DOWN_MASK);
         robotUtil.keyTyped(KeyEvent.VK_CONTROL, KeyEvent.VK_V);
         robotUtil.keyTyped(KeyEvent.VK_ENTER);
-        CachedThreadPoolUtil.getInstance().executeTask(() -> {
+        CachedThreadPoolUtil.getInstance().executeIoTask(() -> {
             try {
                 //保证在执行粘贴操作时不会被提前恢复数据
                 TimeUnit.MILLISECONDS.sleep(500);
@@ -2215,20 +2159,17 @@ public class SearchBar {
 
     private void clearListAndTempAndReset() {
         listResults.clear();
-        tempResults.clear();
         listResultsNum.set(0);
-        tempResultNum.set(0);
     }
 
     //只在重新输入需要初始化所有设置时使用
     private void clearAllAndResetAll() {
         clearAllLabels();
+        cancelSearch();
         clearListAndTempAndReset();
-        tableQueue.clear();
         firstResultStartShowingTime = 0;
         currentResultCount.set(0);
         currentLabelSelectedPosition.set(0);
-        isCacheAndPrioritySearched.set(false);
     }
 
     //设置当前运行模式
@@ -2309,7 +2250,6 @@ public class SearchBar {
                 setRunningMode();
                 if (getSearchBarText().isEmpty()) {
                     listResultsNum.set(0);
-                    tempResultNum.set(0);
                     currentResultCount.set(0);
                     startTime = System.currentTimeMillis();
                     startSignal.set(false);
@@ -2330,6 +2270,10 @@ public class SearchBar {
         });
     }
 
+    private boolean isWindows() {
+        return System.getProperty("os.name").toLowerCase().contains("windows");
+    }
+
     private boolean isAdmin() {
         try {
             ProcessBuilder processBuilder = new ProcessBuilder("cmd.exe");
@@ -2360,22 +2304,25 @@ public class SearchBar {
      * 开始监控磁盘文件变化
      */
     private void startMonitorDisk() {
-        CachedThreadPoolUtil.getInstance().executeTask(() -> {
-            EventManagement eventManagement = EventManagement.getInstance();
-            TranslateUtil translateUtil = TranslateUtil.getInstance();
+        CachedThreadPoolUtil.getInstance().executeIoTask(() -> {
             File[] roots = File.listRoots();
-            if (isAdmin()) {
-                FileMonitor.INSTANCE.set_output(new File("tmp").getAbsolutePath());
+            if (isWindows() && isAdmin()) {
+                fileMonitor = FileMonitor.INSTANCE;
+                fileMonitor.set_output(new File("tmp").getAbsolutePath());
                 for (File root : roots) {
                     boolean isLocal = IsLocalDisk.INSTANCE.isLocalDisk(root.getAbsolutePath());
                     if (isLocal) {
-                        FileMonitor.INSTANCE.monitor(root.getAbsolutePath());
+                        fileMonitor.monitor(root.getAbsolutePath());
                     }
                 }
             } else {
-                eventManagement.putEvent(new ShowTaskBarMessageEvent(
-                        translateUtil.getTranslation("Warning"),
-                        translateUtil.getTranslation("Not administrator, file monitoring function is turned off")));
+                //没有管理员权限或者不是Windows时使用Java实现的文件监控，只监控已经建立索引的磁盘
+                fileMonitor = JavaFileMonitor.getInstance();
+                for (String disk : RegexUtil.comma.split(AllConfigs.getInstance().getDisks())) {
+                    if (!disk.isBlank() && new File(disk).exists()) {
+                        fileMonitor.monitor(disk);
+                    }
+                }
             }
         });
     }
@@ -2553,7 +2500,10 @@ public class SearchBar {
 
     @EventListener(registerClass = RestartEvent.class)
     private static void restartEvent() {
-        FileMonitor.INSTANCE.stop_monitor();
+        FileMonitor monitor = getInstance().fileMonitor;
+        if (monitor != null) {
+            monitor.stop_monitor();
+        }
     }
 
     /**
@@ -2936,169 +2886,14 @@ public class SearchBar {
         });
     }
 
-    /**
-     * 生成未格式化的sql
-     * 第一个map中key保存未格式化的sql，value保存表名称，第二个map为搜索结果的暂时存储容器
-     *
-     * @return map
-     */
-    private LinkedHashMap<LinkedHashMap<String, String>, ConcurrentSkipListSet<String>> getNonFormattedSqlFromTableQueue() {
-        if (isDatabaseUpdated.get()) {
-            isDatabaseUpdated.set(false);
-            initPriorityQueue();
-        }
-        LinkedHashMap<LinkedHashMap<String, String>, ConcurrentSkipListSet<String>> sqlColumnMap = new LinkedHashMap<>();
-        if (priorityQueue.isEmpty()) {
-            return sqlColumnMap;
-        }
-        priorityQueue.forEach(i -> {
-            LinkedHashMap<String, String> eachPriorityMap = new LinkedHashMap<>();
-            tableQueue.forEach(each -> {
-                String sql = "SELECT %s FROM " + each + " WHERE priority=" + i;
-                eachPriorityMap.put(sql, each);
-            });
-            sqlColumnMap.put(eachPriorityMap, new ConcurrentSkipListSet<>());
-        });
-        tableQueue.clear();
-        return sqlColumnMap;
-    }
-
-    private void addMergeThread(AtomicBoolean isCreated) {
-        isCreated.set(true);
-        CachedThreadPoolUtil.getInstance().executeTask(() -> {
-            try {
-                long time = System.currentTimeMillis();
-                while (isVisible()) {
-                    if (startTime > time) {
-                        return;
-                    }
-                    if (isCacheAndPrioritySearched.get()) {
-                        tempResults.forEach(each -> {
-                            tempResultNum.decrementAndGet();
-                            if (isNotContains(listResults, each)) {
-                                listResults.add(each);
-                                listResultsNum.incrementAndGet();
-                            }
-                        });
-                    }
-                    TimeUnit.MILLISECONDS.sleep(5);
-                }
-            } catch (InterruptedException ignored) {
-            } finally {
-                isCreated.set(false);
-            }
-        });
-    }
-
     @EventListener(registerClass = UpdateDatabaseEvent.class)
     private static void updateDatabaseEvent() {
-        getInstance().isDatabaseUpdated.set(true);
+        getInstance().updatingIndexedNum.set(0);
     }
 
-    /**
-     * 添加sql语句，并开始搜索
-     */
-    private void addSqlCommands() {
-        tableQueue.clear();
-        LinkedList<TableNameWeightInfo> tmpCommandList = new LinkedList<>(tableSet);
-        //将tableSet通过权重排序
-        tmpCommandList.sort((o1, o2) -> Long.compare(o2.weight.get(), o1.weight.get()));
-        tmpCommandList.forEach(each -> {
-            if (IsDebug.isDebug()) {
-                System.out.println("已添加表" + each.tableName + "----权重" + each.weight.get());
-            }
-            tableQueue.add(each.tableName);
-        });
-        AtomicBoolean isMergeTempResultThreadCreated = new AtomicBoolean(false);
-        CachedThreadPoolUtil cachedThreadPoolUtil = CachedThreadPoolUtil.getInstance();
-        if (!isMergeTempResultThreadCreated.get()) {
-            addMergeThread(isMergeTempResultThreadCreated);
-        }
-        //每个priority用一个线程
-        //按照优先级排列，key是sql和表名的对应，value是容器
-        LinkedHashMap<LinkedHashMap<String, String>, ConcurrentSkipListSet<String>>
-                nonFormattedSql = getNonFormattedSqlFromTableQueue();
-        AtomicBoolean isResultsFull = new AtomicBoolean(false);
-        AtomicInteger threadStatus = new AtomicInteger(0);
-        AtomicInteger allThreadStatus = new AtomicInteger();
-
-        AtomicInteger number = new AtomicInteger(1);
-        LinkedHashMap<Integer, ConcurrentSkipListSet<String>> containerMap = new LinkedHashMap<>();
-
-        ConcurrentLinkedQueue<Runnable> taskQueue = new ConcurrentLinkedQueue<>();
-
-        //添加搜索任务
-        nonFormattedSql.forEach((commandsMap, container) -> {
-            int currentThreadNum = number.get() << 1;
-            allThreadStatus.set(allThreadStatus.get() | currentThreadNum);
-            containerMap.put(currentThreadNum, container);
-            number.set(number.get() << 1);
-            taskQueue.add(() -> {
-                long time = System.currentTimeMillis();
-                try {
-                    Set<String> sqls = commandsMap.keySet();
-                    DatabaseService databaseService = DatabaseService.getInstance();
-                    sqls.forEach(each -> {
-                        String formattedSql;
-                        if (
-                                runningMode == Enums.RunningMode.NORMAL_MODE && databaseService.getStatus() == Enums.DatabaseStatus.NORMAL
-                        ) {
-                            formattedSql = String.format(each, "PATH");
-                            int matchedNum = searchAndAddToTempResults(System.currentTimeMillis(), formattedSql, isResultsFull, container);
-                            long weight = Math.min(matchedNum, 5);
-                            if (weight != 0L) {
-                                updateTableWeight(commandsMap.get(each), weight);
-                            }
-                            if (isResultsFull.get() || time < startTime) {
-                                throw new RuntimeException("stopped");
-                            }
-                        }
-                    });
-                } finally {
-                    //执行完后将对应的线程flag设为1
-                    threadStatus.set(threadStatus.get() | currentThreadNum);
-                }
-            });
-        });
-
-        //添加消费者线程
-        int processors = Runtime.getRuntime().availableProcessors();
-        processors = Math.min(processors, 2);
-        for (int i = 0; i < processors; i++) {
-            cachedThreadPoolUtil.executeTask(() -> {
-                Runnable todo;
-                while ((todo = taskQueue.poll()) != null) {
-                    todo.run();
-                }
-            });
-        }
-
-        cachedThreadPoolUtil.executeTask(() -> {
-            try {
-                //线程状态的记录从第二个位开始，所以初始值位2
-                int start = 2;
-                int loopCount = 1;
-                long startSearchTime = System.currentTimeMillis();
-                while (threadStatus.get() != allThreadStatus.get() || threadStatus.get() == 0) {
-                    TimeUnit.MILLISECONDS.sleep(5);
-                    if (startTime > startSearchTime) {
-                        break;
-                    }
-                    //当线程完成，threadStatus中的位会被设置为1
-                    //这时，将threadStatus和start做与运算，然后向左移到第一位，如果为1，则线程已完成搜索
-                    if (((threadStatus.get() & start) >> loopCount) == 1) {
-                        start = start << 1;
-                        loopCount++;
-                    }
-                    ConcurrentSkipListSet<String> results = containerMap.get(start);
-                    if (results != null) {
-                        tempResults.addAll(results);
-                        tempResultNum.set(tempResults.size());
-                    }
-                }
-            } catch (InterruptedException ignored) {
-            }
-        });
+    @EventRegister(registerClass = UpdateDatabaseProgressEvent.class)
+    private static void updateDatabaseProgressEvent(Event event) {
+        getInstance().updatingIndexedNum.set(((UpdateDatabaseProgressEvent) event).indexedNum);
     }
 
     private void clearAllLabelBorder() {
@@ -3277,8 +3072,6 @@ public class SearchBar {
                 EventManagement eventManagement = EventManagement.getInstance();
                 TranslateUtil translateUtil = TranslateUtil.getInstance();
                 AllConfigs allConfigs = AllConfigs.getInstance();
-                String[] strings;
-                int length;
                 String text;
                 if (allConfigs.isFirstRun()) {
                     runInternalCommand("help");
@@ -3289,19 +3082,9 @@ public class SearchBar {
                     if ((endTime - startTime > 300) && isNotSqlInitialized.get() && startSignal.get()) {
                         if (!getSearchBarText().isEmpty()) {
                             isNotSqlInitialized.set(false);
-                            if (databaseService.getStatus() == Enums.DatabaseStatus.NORMAL && runningMode == Enums.RunningMode.NORMAL_MODE) {
-                                strings = colon.split(text);
-                                length = strings.length;
-                                if (length == 2) {
-                                    searchCase = semicolon.split(strings[1]);
-                                    searchText = strings[0];
-                                } else {
-                                    searchText = strings[0];
-                                    searchCase = null;
-                                }
-                                keywords = semicolon.split(searchText);
-                                searchCaseToLowerAndRemoveConflict();
-                                addSqlCommands();
+                            //重建索引和整理数据库时仍然可以搜索原来的索引
+                            if (runningMode == Enums.RunningMode.NORMAL_MODE) {
+                                startSearch(text);
                             }
                         }
                     }
@@ -3314,7 +3097,8 @@ public class SearchBar {
                         if (!getSearchBarText().isEmpty()) {
                             setLabelChosen(label1);
                         }
-                        if (databaseService.getStatus() == Enums.DatabaseStatus.NORMAL) {
+                        Enums.DatabaseStatus status = databaseService.getStatus();
+                        if (status == Enums.DatabaseStatus.NORMAL || runningMode == Enums.RunningMode.NORMAL_MODE) {
                             if (runningMode == Enums.RunningMode.COMMAND_MODE) {
                                 //去掉冒号
                                 boolean isExecuted = runInternalCommand(text.substring(1).toLowerCase());
@@ -3340,14 +3124,11 @@ public class SearchBar {
                                     showResults(true, false, false, false,
                                             false, false, false, false);
                                 }
-                            } else if (runningMode == Enums.RunningMode.NORMAL_MODE) {
-                                //对搜索关键字赋值
-                                searchPriorityFolder();
-                                searchCache();
-                                isCacheAndPrioritySearched.set(true);
                             } else if (runningMode == Enums.RunningMode.PLUGIN_MODE) {
                                 String result;
-                                while (runningMode == Enums.RunningMode.PLUGIN_MODE) {
+                                //重新输入后退出，使用新的文字重新读取结果
+                                CancellationToken token = newSearchToken();
+                                while (runningMode == Enums.RunningMode.PLUGIN_MODE && !token.isCancelled()) {
                                     if (currentUsingPlugin != null && (result = currentUsingPlugin.pollFromResultQueue()) != null) {
                                         if (isResultNotRepeat(result)) {
                                             listResults.add(result);
@@ -3360,18 +3141,20 @@ public class SearchBar {
 
                             showResults(true, false, false, false,
                                     false, false, false, false);
+                        }
 
-                        } else if (databaseService.getStatus() == Enums.DatabaseStatus.VACUUM) {
+                        if (status == Enums.DatabaseStatus.VACUUM) {
                             setLabelChosen(label1);
                             eventManagement.putEvent(new ShowTaskBarMessageEvent(translateUtil.getTranslation("Info"),
                                     translateUtil.getTranslation("Organizing database")));
-                        } else if (databaseService.getStatus() == Enums.DatabaseStatus.MANUAL_UPDATE) {
+                        } else if (status == Enums.DatabaseStatus.MANUAL_UPDATE) {
                             setLabelChosen(label1);
                             eventManagement.putEvent(new ShowTaskBarMessageEvent(translateUtil.getTranslation("Info"),
-                                    translateUtil.getTranslation("Updating file index") + "..."));
+                                    translateUtil.getTranslation("Updating file index") + "... " + updatingIndexedNum.get()));
                         }
 
-                        if (databaseService.getStatus() != Enums.DatabaseStatus.NORMAL) {
+                        //命令和插件模式需要等待数据库恢复正常
+                        if (status != Enums.DatabaseStatus.NORMAL && runningMode != Enums.RunningMode.NORMAL_MODE) {
                             //开启线程等待搜索完成
                             addSearchWaiter();
                             clearAllLabels();
@@ -3384,71 +3167,6 @@ public class SearchBar {
         });
     }
 
-    private void searchCaseToLowerAndRemoveConflict() {
-        if (searchCase == null || searchCase.length == 0) {
-            return;
-        }
-        ArrayList<String> list = new ArrayList<>();
-        for (String each : searchCase) {
-            list.add(each.toLowerCase());
-        }
-        if (list.indexOf("f") != -1 && list.indexOf("d") != -1) {
-            list.remove("f");
-            list.remove("d");
-        }
-        if (list.isEmpty()) {
-            searchCase = null;
-        } else {
-            String[] tmp = new String[list.size()];
-            list.toArray(tmp);
-            searchCase = tmp;
-        }
-    }
-
-    private boolean isExist(String path) {
-        return Files.exists(Path.of(path));
-    }
-
-
-    /**
-     * 检查文件路径是否匹配所有输入规则
-     *
-     * @param path 文件路径
-     * @return true如果满足所有条件 否则false
-     */
-    private boolean check(String path) {
-        if (notMatched(path, true)) {
-            return false;
-        }
-        if (searchCase == null || searchCase.length == 0) {
-            return true;
-        }
-        for (String eachCase : searchCase) {
-            switch (eachCase) {
-                case "f":
-                    if (!Files.isRegularFile(Path.of(path))) {
-                        return false;
-                    }
-                    break;
-                case "d":
-                    if (!Files.isDirectory(Path.of(path))) {
-                        return false;
-                    }
-                    break;
-                case "full":
-                    if (!searchText.equalsIgnoreCase(getFileName(path))) {
-                        return false;
-                    }
-                    break;
-                case "case":
-                    if (notMatched(path, false)) {
-                        return false;
-                    }
-            }
-        }
-        //所有规则均已匹配
-        return true;
-    }
 
     /**
      * 检查当前文件路径是否已被加入到listResults中
@@ -3457,107 +3175,44 @@ public class SearchBar {
      * @return true如果还未被加入
      */
     private boolean isResultNotRepeat(String result) {
-        return isNotContains(tempResults, result) && isNotContains(listResults, result);
-    }
-
-    /**
-     * 检查文件路径是否匹配然后加入到列表
-     *
-     * @param path 文件路径
-     */
-    private void matchOnCacheAndPriorityFolder(String path, boolean isResultFromCache) {
-        checkIsMatchedAndAddToList(path, false, isResultFromCache, null);
+        return isNotContains(listResults, result);
     }
 
     /**
-     * * 检查文件路径是否匹配然后加入到列表
+     * 取消上一次搜索，在后台开始新的搜索，结果逐个加入到listResults
+     * 搜索结束后发现已经不存在的文件会从listResults中移除
      *
-     * @param path              文件路径
-     * @param isPutToTemp       是否放到临时容器，在搜索优先文件夹和cache时为false，其他为true
-     * @param isResultFromCache 是否来自缓存
-     * @return true如果匹配成功
+     * @param text 搜索框中的文字
      */
-    private boolean checkIsMatchedAndAddToList(String path, boolean isPutToTemp, boolean isResultFromCache, ConcurrentSkipListSet<String> container) {
-        boolean ret = false;
-        if (check(path)) {
-            if (isExist(path)) {
-                //字符串匹配通过
-                ret = true;
-                if (isPutToTemp) {
-                    if (isNotContains(tempResults, path)) {
-                        if (container == null) {
-                            tempResults.add(path);
-                            tempResultNum.incrementAndGet();
-                        } else {
-                            container.add(path);
-                        }
+    private void startSearch(String text) {
+        CancellationToken token = newSearchToken();
+        CachedThreadPoolUtil.getInstance().executeIoTask(() ->
+                SearchEngine.getInstance().search(text, MAX_RESULTS_COUNT, token, path -> {
+                    if (!token.isCancelled() && isResultNotRepeat(path)) {
+                        listResults.add(path);
+                        listResultsNum.incrementAndGet();
                     }
-                } else {
-                    if (isNotContains(listResults, path)) {
-                        if (container == null) {
-                            listResultsNum.incrementAndGet();
-                            listResults.add(path);
-                        } else {
-                            container.add(path);
-                        }
+                }, path -> {
+                    if (!token.isCancelled() && listResults.remove(path)) {
+                        listResultsNum.decrementAndGet();
                     }
-                }
-            } else {
-                if (isResultFromCache) {
-                    EventManagement.getInstance().putEvent(new DeleteFromCacheEvent(path));
-                }
-            }
-        }
-        return ret;
-    }
-
-    private void initPriorityQueue() {
-        priorityQueue.clear();
-        try (PreparedStatement pStmt = SQLiteUtil.getPreparedStatement("SELECT PRIORITY FROM priority order by priority desc;")) {
-            ResultSet resultSet = pStmt.executeQuery();
-            while (resultSet.next()) {
-                priorityQueue.add(resultSet.getInt("PRIORITY"));
-            }
-        } catch (SQLException throwables) {
-            throwables.printStackTrace();
-        }
+                }));
     }
 
     /**
-     * 搜索数据酷并加入到tempQueue中
+     * 取消上一次搜索，创建新的取消标记，搜索和插件结果的读取共用
      *
-     * @param time 开始搜索时间，用于检测用于重新输入匹配信息后快速停止
-     * @param sql  sql
+     * @return 取消标记
      */
-    private int searchAndAddToTempResults(long time, String sql, AtomicBoolean isResultsFull, ConcurrentSkipListSet<String> container) {
-        int count = 0;
-        //结果太多则不再进行搜索
-        if (listResultsNum.get() + tempResultNum.get() > MAX_RESULTS_COUNT || startTime > time) {
-            isResultsFull.set(true);
-            return count;
-        }
-        try (PreparedStatement stmt = SQLiteUtil.getPreparedStatement(sql);
-             ResultSet resultSet = stmt.executeQuery()) {
-            String each;
-            while (resultSet.next()) {
-                //结果太多则不再进行搜索
-                //用户重新输入了信息
-                if (listResultsNum.get() + tempResultNum.get() > MAX_RESULTS_COUNT || startTime > time) {
-                    tableQueue.clear();
-                    return count;
-                }
-                each = resultSet.getString("PATH");
-                if (databaseService.getStatus() == Enums.DatabaseStatus.NORMAL) {
-                    if (checkIsMatchedAndAddToList(each, true, false, container)) {
-                        count++;
-                    }
-                }
-            }
-        } catch (SQLException throwables) {
-            System.err.println("error sql : " + sql);
-            throwables.printStackTrace();
-        }
-        return count;
+    private CancellationToken newSearchToken() {
+        CancellationToken token = new CancellationToken();
+        searchToken.cancel();
+        searchToken = token;
+        return token;
+    }
+
+    private void cancelSearch() {
+        searchToken.cancel();
     }
 
     /**
@@ -3974,155 +3629,19 @@ public class SearchBar {
     }
 
     /**
-     * 保存当前文件路径到数据库缓存
+     * 保存当前文件路径到数据库缓存，并记录一次打开
      *
      * @param content 文件路径
      */
     private void saveCache(String content) {
         AllConfigs allConfigs = AllConfigs.getInstance();
-        IsCacheExistEvent isCacheExistEvent = new IsCacheExistEvent(content);
         EventManagement eventManagement = EventManagement.getInstance();
-        if (DatabaseService.getInstance().getCacheNum() < allConfigs.getCacheNumLimit()) {
-            //检查缓存是否已存在
-            eventManagement.putEvent(isCacheExistEvent);
-            if (!eventManagement.waitForEvent(isCacheExistEvent)) {
-                if (!(Boolean) isCacheExistEvent.getReturnValue()) {
-                    //不存在则添加
-                    eventManagement.putEvent(new AddToCacheEvent(content));
-                    eventManagement.putEvent(new AddCacheEvent(content));
-                }
-            }
-        }
-    }
-
-    /**
-     * 从缓存中搜索结果并将匹配的放入listResults
-     */
-    private void searchCache() {
-        try (PreparedStatement statement = SQLiteUtil.getPreparedStatement("SELECT PATH FROM cache;");
-             ResultSet resultSet = statement.executeQuery()) {
-            while (resultSet.next()) {
-                String eachCache = resultSet.getString("PATH");
-                matchOnCacheAndPriorityFolder(eachCache, true);
-            }
-        } catch (SQLException throwables) {
-            throwables.printStackTrace();
-        }
-    }
-
-    /**
-     * 判断文件路径是否满足当前匹配结果（该方法由check（String）方法使用），检查文件路径使用check（String）方法。
-     *
-     * @param path         文件路径
-     * @param isIgnoreCase 是否忽略大小谢
-     * @return true如果匹配成功
-     * @see #check(String);
-     */
-    private boolean notMatched(String path, boolean isIgnoreCase) {
-        String matcherStrFromFilePath;
-        boolean isPath;
-        for (String eachKeyword : keywords) {
-            if (eachKeyword == null || eachKeyword.isEmpty()) {
-                continue;
-            }
-            if (eachKeyword.startsWith("/") || eachKeyword.startsWith(File.separator)) {
-                //匹配路径
-                isPath = true;
-                Matcher matcher = slash.matcher(eachKeyword);
-                eachKeyword = matcher.replaceAll(Matcher.quoteReplacement(File.separator));
-                //获取父路径
-                matcherStrFromFilePath = getParentPath(path);
-            } else {
-                //获取名字
-                isPath = false;
-                matcherStrFromFilePath = getFileName(path);
-            }
-            //转换大小写
-            if (isIgnoreCase) {
-                matcherStrFromFilePath = matcherStrFromFilePath.toLowerCase();
-                eachKeyword = eachKeyword.toLowerCase();
-            }
-            //开始匹配
-            if (matcherStrFromFilePath.indexOf(eachKeyword) == -1) {
-                if (isPath) {
-                    return true;
-                } else {
-                    if (PinyinUtil.isContainChinese(matcherStrFromFilePath)) {
-                        if (PinyinUtil.toPinyin(matcherStrFromFilePath, "").indexOf(eachKeyword) == -1) {
-                            return true;
-                        }
-                    } else {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    /**
-     * 搜索优先文件夹
-     */
-    private void searchPriorityFolder() {
-        File path = new File(AllConfigs.getInstance().getPriorityFolder());
-        boolean isPriorityFolderExist = path.exists();
-        AtomicInteger taskNum = new AtomicInteger(0);
-        if (isPriorityFolderExist) {
-            ConcurrentLinkedQueue<String> listRemain = new ConcurrentLinkedQueue<>();
-            File[] files = path.listFiles();
-            if (null == files || files.length == 0) {
-                return;
-            }
-            Arrays.stream(files).forEach(each -> {
-                matchOnCacheAndPriorityFolder(each.getAbsolutePath(), false);
-                if (each.isDirectory()) {
-                    listRemain.add(each.getAbsolutePath());
-                }
-            });
-
-            int cpuCores = Runtime.getRuntime().availableProcessors();
-            final int threadCount = Math.min(cpuCores, 8);
-            CachedThreadPoolUtil threadPoolUtil = CachedThreadPoolUtil.getInstance();
-            for (int i = 0; i < threadCount; ++i) {
-                threadPoolUtil.executeTask(() -> {
-                    long startSearchTime = System.currentTimeMillis();
-                    while (!listRemain.isEmpty()) {
-                        String remain = listRemain.poll();
-                        if (remain == null || remain.isEmpty()) {
-                            continue;
-                        }
-                        File[] allFiles = new File(remain).listFiles();
-                        if (allFiles == null || allFiles.length == 0) {
-                            continue;
-                        }
-
-                        Arrays.stream(allFiles).forEach(each -> {
-                            matchOnCacheAndPriorityFolder(each.getAbsolutePath(), false);
-                            if (startTime > startSearchTime) {
-                                listRemain.clear();
-                                throw new RuntimeException("stopped");
-                            }
-                            if (each.isDirectory()) {
-                                listRemain.add(each.getAbsolutePath());
-                            }
-                        });
-                    }
-                    taskNum.incrementAndGet();
-                });
-            }
-            //等待所有线程完成
-            try {
-                int count = 0;
-                EventManagement eventManagement = EventManagement.getInstance();
-                while (taskNum.get() != threadCount) {
-                    TimeUnit.MILLISECONDS.sleep(1);
-                    count++;
-                    if (count >= 2000 || (!eventManagement.isNotMainExit())) {
-                        break;
-                    }
-                }
-            } catch (InterruptedException ignored) {
-            }
+        eventManagement.putEvent(new AddOpenHistoryEvent(content));
+        DatabaseService databaseService = DatabaseService.getInstance();
+        //缓存在内存中，可以直接检查是否已存在
+        if (databaseService.getCacheNum() < allConfigs.getCacheNumLimit() && !databaseService.isCacheExist(content)) {
+            eventManagement.putEvent(new AddToCacheEvent(content));
+            eventManagement.putEvent(new AddCacheEvent(content));
         }
     }
 
@@ -4191,17 +3710,16 @@ public class SearchBar {
 
     private void resetAllStatus() {
         startTime = System.currentTimeMillis();//结束搜索
+        cancelSearch();
         currentResultCount.set(0);
         currentLabelSelectedPosition.set(0);
         clearListAndTempAndReset();
-        tableQueue.clear();
         isUserPressed.set(false);
         isLockMouseMotion.set(false);
         isOpenLastFolderPressed.set(false);
         isRunAsAdminPressed.set(false);
         isCopyPathPressed.set(false);
         startSignal.set(false);
-        isCacheAndPrioritySearched.set(false);
         isWaiting.set(false);
         isMouseDraggedInWindow.set(false);
     }
@@ -31,6 +31,9 @@ import file.engine.services.CheckHotKeyService;
 import file.engine.services.DatabaseService;
 import file.engine.services.download.DownloadManager;
 import file.engine.services.download.DownloadService;
+import file.engine.services.index.partition.AsciiSumPartitioner;
+import file.engine.services.index.partition.FirstCharPartitioner;
+import file.engine.services.index.partition.HashPartitioner;
 import file.engine.services.plugin.system.Plugin;
 import file.engine.services.plugin.system.PluginService;
 import file.engine.utils.CachedThreadPoolUtil;
@@ -273,6 +276,8 @@ public class SettingsFrame {
     private JTextField textFieldBorderThickness;
     private JComboBox<Object> comboBoxBorderType;
     private JCheckBox checkBoxIsAttachExplorer;
+    private JLabel labelPartitioner;
+    private JComboBox<String> comboBoxPartitioner;
 
 
     private static volatile SettingsFrame instance = null;
@@ -327,7 +332,7 @@ public class SettingsFrame {
             int isConfirmed = JOptionPane.showConfirmDialog(frame, translateUtil.getTranslation("Whether to remove and backup all files on the desktop," +
                     "they will be in the program's Files folder, which may take a few minutes"));
             if (isConfirmed == JOptionPane.YES_OPTION) {
-                Future<Boolean> future = cachedThreadPoolUtil.executeTask(MoveDesktopFiles::start);
+                Future<Boolean> future = cachedThreadPoolUtil.executeIoTask(MoveDesktopFiles::start);
                 try {
                     if (!future.get()) {
                         JOptionPane.showMessageDialog(null,
@@ -966,7 +971,7 @@ public class SettingsFrame {
             }
 
             void doSearch() {
-                cachedThreadPoolUtil.executeTask(() -> {
+                cachedThreadPoolUtil.executeIoTask(() -> {
                     String tmp;
                     if ((tmp = searchText) == null || tmp.isEmpty()) {
                         listCmds.setListData(allConfigs.getCmdSet().toArray());
@@ -1486,7 +1491,7 @@ public class SettingsFrame {
                             startCheckTime.set(0xFFFL);  //表示检查失败
                         }
                     });
-                    cachedThreadPoolUtil.executeTask(checkUpdateThread);
+                    cachedThreadPoolUtil.executeIoTask(checkUpdateThread);
                     //等待获取插件更新信息
                     waitForCheckUpdateResult(startCheckTime, checkUpdateThread);
                 }
@@ -1747,19 +1752,11 @@ public class SettingsFrame {
         }
         chooseUpdateAddress.setSelectedItem(allConfigs.getUpdateAddress());
         comboBoxBorderType.setSelectedItem(allConfigs.getBorderType());
+        comboBoxPartitioner.setSelectedItem(allConfigs.getPartitioner());
     }
 
     private void initCacheArray() {
-        String eachLine;
-        try (PreparedStatement statement = SQLiteUtil.getPreparedStatement("SELECT PATH FROM cache;");
-             ResultSet resultSet = statement.executeQuery()) {
-            while (resultSet.next()) {
-                eachLine = resultSet.getString("PATH");
-                cacheSet.add(eachLine);
-            }
-        } catch (Exception throwables) {
-            throwables.printStackTrace();
-        }
+        cacheSet.addAll(DatabaseService.getInstance().getCache().keySet());
     }
 
     private void selectProxyType() {
@@ -1869,6 +1866,8 @@ public class SettingsFrame {
 
         addBorderTypeToComboBox();
 
+        addPartitionerToComboBox();
+
         initCacheArray();
 
         initSuffixMap();
@@ -1919,7 +1918,7 @@ public class SettingsFrame {
     }
 
     private boolean isCacheExist(String cache) {
-        return cacheSet.contains(cache);
+        return DatabaseService.getInstance().isCacheExist(cache);
     }
 
     private void addCache(String cache) {
@@ -1933,6 +1932,15 @@ public class SettingsFrame {
         }
     }
 
+    private void addPartitionerToComboBox() {
+        comboBoxPartitioner.addItem(HashPartitioner.NAME);
+        comboBoxPartitioner.addItem(FirstCharPartitioner.NAME);
+        //需要Windows下的getAscII.dll
+        if (System.getProperty("os.name").toLowerCase().contains("windows")) {
+            comboBoxPartitioner.addItem(AsciiSumPartitioner.NAME);
+        }
+    }
+
     private void addUpdateAddressToComboBox() {
         Set<String> updateAddresses = allConfigs.getAllUpdateAddress();
         for (String each : updateAddresses) {
@@ -1954,6 +1962,7 @@ public class SettingsFrame {
         labelUpdateInterval.setText(translateUtil.getTranslation("File update detection interval:"));
         labelSecond.setText(translateUtil.getTranslation("Seconds"));
         labeltipPriorityFolder.setText(translateUtil.getTranslation("Priority search folder location (double-click to clear):"));
+        labelPartitioner.setText(translateUtil.getTranslation("Database partition method (takes effect after restart):"));
         labelConstIgnorePathTip.setText(translateUtil.getTranslation("Separate different paths with commas, and ignore C:\\Windows by default"));
         labelSetIgnorePathTip.setText(translateUtil.getTranslation("Set ignore folder:"));
         labelTransparency.setText(translateUtil.getTranslation("Search bar transparency:"));
@@ -2314,6 +2323,9 @@ public class SettingsFrame {
         configEntity.setCheckUpdateStartup(checkBoxCheckUpdate.isSelected());
         configEntity.setDisks(parseDisk());
         configEntity.setAttachExplorer(checkBoxIsAttachExplorer.isSelected());
+        //没有界面设置的选项，保持原来的值
+        configEntity.setUseColumnarIndex(allConfigs.isUseColumnarIndex());
+        configEntity.setPartitioner((String) comboBoxPartitioner.getSelectedItem());
 
         setStartup(checkBoxAddToStartup.isSelected());
         eventManagement.putEvent(new ResponseCtrlEvent(checkBoxResponseCtrl.isSelected()));
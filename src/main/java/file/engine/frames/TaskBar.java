@@ -3,18 +3,23 @@ package file.engine.frames;
 import file.engine.IsDebug;
 import file.engine.annotation.EventListener;
 import file.engine.annotation.EventRegister;
+import file.engine.configs.Enums;
 import file.engine.dllInterface.GetHandle;
 import file.engine.event.handler.Event;
 import file.engine.event.handler.EventManagement;
+import file.engine.event.handler.impl.database.StopUpdateDatabaseEvent;
 import file.engine.event.handler.impl.frame.settingsFrame.ShowSettingsFrameEvent;
 import file.engine.event.handler.impl.stop.CloseEvent;
 import file.engine.event.handler.impl.stop.RestartEvent;
 import file.engine.event.handler.impl.taskbar.ShowTaskBarMessageEvent;
 import file.engine.event.handler.impl.taskbar.ShowTrayIconEvent;
+import file.engine.services.DatabaseService;
 import file.engine.utils.CachedThreadPoolUtil;
 import file.engine.utils.TranslateUtil;
 
 import javax.swing.*;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -189,6 +194,10 @@ public class TaskBar {
         JMenuItem settings = new JMenuItem(translateUtil.getTranslation("Settings"));
         settings.addActionListener(e -> eventManagement.putEvent(new ShowSettingsFrameEvent()));
 
+        //只在更新索引时显示，停止后保留原来的索引
+        JMenuItem stopUpdate = new JMenuItem(translateUtil.getTranslation("Stop updating file index"));
+        stopUpdate.addActionListener(e -> eventManagement.putEvent(new StopUpdateDatabaseEvent()));
+
         JSeparator separator = new JSeparator();
 
         JMenuItem restartProc = new JMenuItem(translateUtil.getTranslation("Restart"));
@@ -197,7 +206,22 @@ public class TaskBar {
         close.addActionListener(e -> closeAndExit());
 
         popupMenu.add(settings);
+        popupMenu.add(stopUpdate);
         popupMenu.add(separator);
+        popupMenu.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                stopUpdate.setVisible(DatabaseService.getInstance().getStatus() == Enums.DatabaseStatus.MANUAL_UPDATE);
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
         popupMenu.add(restartProc);
         popupMenu.add(close);
         return popupMenu;
@@ -6,53 +6,513 @@ import file.engine.annotation.EventRegister;
 import file.engine.configs.AllConfigs;
 import file.engine.configs.Enums;
 import file.engine.constant.Constants;
-import file.engine.dllInterface.GetAscII;
 import file.engine.event.handler.Event;
 import file.engine.event.handler.EventManagement;
 import file.engine.event.handler.impl.database.*;
 import file.engine.event.handler.impl.stop.RestartEvent;
 import file.engine.event.handler.impl.taskbar.ShowTaskBarMessageEvent;
+import file.engine.services.index.ColumnarPathStore;
+import file.engine.services.index.DiskIndexer;
+import file.engine.services.index.IndexChangeLog;
+import file.engine.services.index.TrigramIndex;
+import file.engine.services.index.partition.AsciiSumPartitioner;
+import file.engine.services.index.partition.Partitioner;
 import file.engine.utils.CachedThreadPoolUtil;
+import file.engine.utils.PinyinUtil;
 import file.engine.utils.SQLiteUtil;
 import file.engine.utils.TranslateUtil;
+import file.engine.utils.file.FileTailer;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class DatabaseService {
     private final ConcurrentLinkedQueue<SQLWithTaskId> commandSet = new ConcurrentLinkedQueue<>();
+    //等待写入的文件记录和缓存记录，key为文件路径，同一个路径只保留最后一次操作
+    private final Object pendingLock = new Object();
+    //状态恢复为NORMAL或者等待写入的修改被取出时唤醒读取修改的线程
+    private final Object busyLock = new Object();
+    private LinkedHashMap<String, PathCommand> pendingListCommands = new LinkedHashMap<>();
+    private LinkedHashMap<String, Boolean> pendingCacheCommands = new LinkedHashMap<>();
+    //重建索引期间的文件记录修改，不为null时表示正在重建
+    private ArrayList<PathCommand> listChangesOnRebuilding = null;
+    //每张表缓存的PreparedStatement，连接改变后重新创建
+    private Connection statementConnection = null;
+    private final PreparedStatement[] insertStatements = new PreparedStatement[Partitioner.getTableNum()];
+    private final PreparedStatement[] deleteStatements = new PreparedStatement[Partitioner.getTableNum()];
+    private PreparedStatement insertCacheStatement = null;
+    private PreparedStatement deleteCacheStatement = null;
     private volatile Enums.DatabaseStatus status = Enums.DatabaseStatus.NORMAL;
     private final AtomicBoolean isExecuteImmediately = new AtomicBoolean(false);
-    private final AtomicInteger cacheNum = new AtomicInteger(0);
+    //请求写入时唤醒写入线程，写入完成后唤醒等待commandSet的线程
+    private final Object commandLock = new Object();
+    //cache表的内存副本，value为是否为文件夹，启动时读取一次，修改时同时写入数据库
+    private final ConcurrentHashMap<String, Boolean> cacheMap = new ConcurrentHashMap<>();
+    //priority表的内存副本，添加文件时直接查询后缀对应的优先级
+    private final ConcurrentHashMap<String, Integer> suffixPriorityMap = new ConcurrentHashMap<>();
+    //数据库中的文件或缓存的修改记录，用于判断之前的搜索结果是否还有效
+    private final IndexChangeLog indexChangeLog = new IndexChangeLog();
+    private volatile TrigramIndex trigramIndex = new TrigramIndex();
+    private final AtomicBoolean isTrigramIndexReady = new AtomicBoolean(false);
+    //重新建立三元组索引期间的修改，不为null时表示正在建立，与trigramIndex的替换使用同一个锁
+    private final Object trigramLock = new Object();
+    private final Object trigramLoadLock = new Object();
+    private ArrayList<IndexChange> trigramChangesOnLoading = null;
+    private volatile ColumnarPathStore columnarPathStore = null;
+    private final AtomicBoolean isColumnarPathStoreRebuilding = new AtomicBoolean(false);
+    //列式索引重建期间发生的变化，重建完成后重新应用到新的索引
+    private final ConcurrentLinkedQueue<IndexChange> columnarChangesOnRebuilding = new ConcurrentLinkedQueue<>();
+
+    //正在进行的磁盘遍历，用于取消
+    private volatile DiskIndexer diskIndexer = null;
+    private final Partitioner partitioner = Partitioner.getByName(AllConfigs.getInstance().getPartitioner());
+    //启动时检查分区方式之前，文件记录的修改保留在内存中，避免写入还未迁移的表
+    private volatile boolean isPartitionChecked = false;
 
     private static final int MAX_SQL_NUM = 5000;
+    private static final int MAX_CHANGES_PER_BATCH = 3000;
+    private static final int COLUMNAR_REBUILD_THRESHOLD = 100000;
+    private static final int WAL_CHECKPOINT_PERIOD_MINUTES = 5;
+    private static final String COLUMNAR_INDEX_DIR = "user/index";
+    //ISDIR为1表示文件夹，0表示文件，-1表示旧版本数据库中未知的记录
+    //PINYIN为文件名的全拼和首字母，不包含中文时为空字符串，旧版本数据库中为NULL
+    private static final String LIST_TABLE_COLUMNS = "(ASCII INT, PATH text unique, PRIORITY INT, ISDIR INT DEFAULT -1, PINYIN text DEFAULT NULL)";
+    private static final String INSERT_LIST_SQL = "INSERT OR IGNORE INTO list%d(ASCII, PATH, PRIORITY, ISDIR, PINYIN) VALUES(?, ?, ?, ?, ?);";
+    //重建索引时写入的新表，完成后替换原来的表
+    private static final String NEW_LIST_TABLE_PREFIX = "newlist";
+    private static final String INSERT_NEW_LIST_SQL = "INSERT OR IGNORE INTO " + NEW_LIST_TABLE_PREFIX + "%d(ASCII, PATH, PRIORITY, ISDIR, PINYIN) VALUES(?, ?, ?, ?, ?);";
 
     private static volatile DatabaseService INSTANCE = null;
 
     private DatabaseService() {
-        addRecordsToDatabaseThread();
-        deleteRecordsToDatabaseThread();
+        readChangesThread();
         checkTimeAndSendExecuteSqlSignalThread();
+        walCheckpointThread();
         executeSqlCommandsThread();
-        initCacheNum();
+        initCache();
+        suffixPriorityMap.putAll(getSuffixPriorityMap());
+        initIndexThread();
+    }
+
+    /**
+     * 检查数据库分区方式并输出各个表的记录数量，然后建立三元组索引和列式索引
+     * 必须按顺序执行，索引需要在迁移完成后的数据库中建立
+     */
+    private void initIndexThread() {
+        CachedThreadPoolUtil.getInstance().executeIoTask(() -> {
+            migratePartition();
+            printRowsPerTable();
+            initTrigramIndex();
+            initColumnarPathStore();
+        });
+    }
+
+    /**
+     * 获取数据库当前使用的分区方式，旧版本数据库没有记录，默认为ASCII分区
+     *
+     * @return 分区方式名称
+     */
+    private String getStoredPartitionerName() {
+        String name = getDbInfo("partitioner");
+        return name == null ? AsciiSumPartitioner.NAME : name;
+    }
+
+    /**
+     * 读取dbInfo表中保存的信息
+     *
+     * @param key key
+     * @return 不存在时返回null
+     */
+    public String getDbInfo(String key) {
+        try (PreparedStatement stmt = SQLiteUtil.getPreparedStatement("SELECT VALUE FROM dbInfo WHERE KEY=?;")) {
+            stmt.setString(1, key);
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getString("VALUE");
+                }
+            }
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * 保存信息到dbInfo表，与其他修改一起写入
+     *
+     * @param key   key
+     * @param value value
+     */
+    public void setDbInfo(String key, String value) {
+        addToCommandSet(new SQLWithTaskId(SqlTaskIds.UPDATE_DB_INFO,
+                "INSERT OR REPLACE INTO dbInfo VALUES(?, ?);", key, value));
+    }
+
+    private void setStoredPartitionerName(String name) {
+        try (PreparedStatement stmt = SQLiteUtil.getPreparedStatement("INSERT OR REPLACE INTO dbInfo VALUES(\"partitioner\", ?);")) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        }
+    }
+
+    /**
+     * 数据库的分区方式和设置不同时，将所有记录移动到新的表中
+     * 每张表单独提交，迁移中断后下次启动会重新计算所有记录的位置，已经移动的记录不受影响
+     * 等待写入的修改已经按照新的分区方式计算了表，检查完成前一直保留在内存中，迁移完成后再写入
+     */
+    private synchronized void migratePartition() {
+        try {
+            String storedName = getStoredPartitionerName();
+            if (!partitioner.getName().equals(storedName)) {
+                migratePartition(storedName);
+            }
+        } finally {
+            isPartitionChecked = true;
+            //写入检查期间保留的修改，写入后唤醒等待数据库空闲的线程
+            executeImmediately();
+        }
+    }
+
+    private void migratePartition(String storedName) {
+        Enums.DatabaseStatus lastStatus = status;
+        setStatus(Enums.DatabaseStatus.MANUAL_UPDATE);
+        long start = System.currentTimeMillis();
+        int movedNum = 0;
+        Connection connection = SQLiteUtil.getConnection();
+        try {
+            for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+                ArrayList<String> paths = new ArrayList<>();
+                ArrayList<Integer> priorities = new ArrayList<>();
+                ArrayList<Integer> isDirectories = new ArrayList<>();
+                ArrayList<String> pinyins = new ArrayList<>();
+                try (PreparedStatement stmt = SQLiteUtil.getPreparedStatement("SELECT PATH, PRIORITY, ISDIR, PINYIN FROM list" + i + ";");
+                     ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        paths.add(resultSet.getString("PATH"));
+                        priorities.add(resultSet.getInt("PRIORITY"));
+                        isDirectories.add(resultSet.getInt("ISDIR"));
+                        pinyins.add(resultSet.getString("PINYIN"));
+                    }
+                }
+                PreparedStatement[] inserts = new PreparedStatement[Partitioner.getTableNum()];
+                connection.setAutoCommit(false);
+                try (PreparedStatement updateKey = connection.prepareStatement("UPDATE list" + i + " SET ASCII=? WHERE PATH=?;");
+                     PreparedStatement delete = connection.prepareStatement("DELETE FROM list" + i + " WHERE PATH=?;")) {
+                    for (int j = 0; j < paths.size(); j++) {
+                        String path = paths.get(j);
+                        int key = partitioner.getKey(getFileName(path));
+                        int table = partitioner.getPartition(key);
+                        if (table == i) {
+                            updateKey.setInt(1, key);
+                            updateKey.setString(2, path);
+                            updateKey.addBatch();
+                            continue;
+                        }
+                        if (inserts[table] == null) {
+                            inserts[table] = connection.prepareStatement(String.format(INSERT_LIST_SQL, table));
+                        }
+                        inserts[table].setInt(1, key);
+                        inserts[table].setString(2, path);
+                        inserts[table].setInt(3, priorities.get(j));
+                        inserts[table].setInt(4, isDirectories.get(j));
+                        inserts[table].setString(5, pinyins.get(j));
+                        inserts[table].addBatch();
+                        delete.setString(1, path);
+                        delete.addBatch();
+                        movedNum++;
+                    }
+                    for (PreparedStatement insert : inserts) {
+                        if (insert != null) {
+                            insert.executeBatch();
+                        }
+                    }
+                    updateKey.executeBatch();
+                    delete.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    //避免设置自动提交时提交了只执行了一半的修改
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    for (PreparedStatement insert : inserts) {
+                        if (insert != null) {
+                            insert.close();
+                        }
+                    }
+                    connection.setAutoCommit(true);
+                }
+            }
+            setStoredPartitionerName(partitioner.getName());
+            if (IsDebug.isDebug()) {
+                System.out.println("数据库分区方式从" + storedName + "迁移到" + partitioner.getName() +
+                        "，移动" + movedNum + "条记录，用时" + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        } finally {
+            setStatus(lastStatus);
+        }
     }
 
     /**
-     * 获取数据库缓存条目数量，用于判断软件是否还能继续写入缓存
+     * debug模式下输出每张表的记录数量，用于检查分区是否均匀
      */
-    private void initCacheNum() {
-        try (PreparedStatement stmt = SQLiteUtil.getPreparedStatement("SELECT COUNT(PATH) FROM cache;");
+    private void printRowsPerTable() {
+        if (!IsDebug.isDebug()) {
+            return;
+        }
+        StringBuilder strb = new StringBuilder();
+        long total = 0;
+        long max = 0;
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+            try (PreparedStatement stmt = SQLiteUtil.getPreparedStatement("SELECT COUNT(PATH) FROM list" + i + ";");
+                 ResultSet resultSet = stmt.executeQuery()) {
+                long rows = resultSet.next() ? resultSet.getLong(1) : 0;
+                total += rows;
+                max = Math.max(max, rows);
+                min = Math.min(min, rows);
+                strb.append("list").append(i).append(": ").append(rows).append(i == Constants.ALL_TABLE_NUM ? "" : ", ");
+            } catch (SQLException throwables) {
+                throwables.printStackTrace();
+            }
+        }
+        System.out.println("分区方式：" + partitioner.getName() + "，总记录数：" + total + "，最大：" + max + "，最小：" +
+                (min == Long.MAX_VALUE ? 0 : min) + "，平均：" + total / Partitioner.getTableNum());
+        System.out.println(strb);
+    }
+
+    /**
+     * 打开已有的列式索引文件，不存在则从数据库生成
+     */
+    private void initColumnarPathStore() {
+        if (!AllConfigs.getInstance().isUseColumnarIndex()) {
+            return;
+        }
+        File[] indexFiles = new File(COLUMNAR_INDEX_DIR).listFiles((dir, name) -> name.endsWith(".dat"));
+        if (indexFiles != null && indexFiles.length > 0) {
+            //文件名为生成时间，使用最新的索引文件，删除其他的
+            Arrays.sort(indexFiles, Comparator.comparing(File::getName).reversed());
+            for (int i = 1; i < indexFiles.length; i++) {
+                if (!indexFiles[i].delete() && IsDebug.isDebug()) {
+                    System.err.println("删除旧索引文件失败" + indexFiles[i]);
+                }
+            }
+            try {
+                columnarPathStore = ColumnarPathStore.open(indexFiles[0]);
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        rebuildColumnarPathStore();
+    }
+
+    /**
+     * 从数据库重新生成列式索引文件
+     * 旧的索引文件可能仍处于映射状态无法删除，所以每次生成新的文件，在下次启动时清理
+     */
+    private void rebuildColumnarPathStore() {
+        if (!AllConfigs.getInstance().isUseColumnarIndex() || isColumnarPathStoreRebuilding.getAndSet(true)) {
+            return;
+        }
+        try {
+            columnarChangesOnRebuilding.clear();
+            //先将还未写入的修改写入数据库
+            executeAllCommands();
+            ColumnarPathStore.Builder builder = new ColumnarPathStore.Builder();
+            for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+                try (SQLiteUtil.ReadOnlyConnection reader = SQLiteUtil.borrowReadOnlyConnection();
+                     ResultSet resultSet = reader.getPreparedStatement("SELECT PATH, PRIORITY, ISDIR FROM list" + i + ";").executeQuery()) {
+                    while (resultSet.next()) {
+                        builder.add(resultSet.getString("PATH"), resultSet.getInt("PRIORITY"), resultSet.getInt("ISDIR"));
+                    }
+                }
+            }
+            File indexDir = new File(COLUMNAR_INDEX_DIR);
+            if (!indexDir.exists() && !indexDir.mkdirs()) {
+                throw new IOException("创建索引文件夹失败");
+            }
+            File target = new File(indexDir, System.currentTimeMillis() + ".dat");
+            builder.write(target);
+            ColumnarPathStore newStore = ColumnarPathStore.open(target);
+            IndexChange change;
+            while ((change = columnarChangesOnRebuilding.poll()) != null) {
+                applyColumnarChange(newStore, change);
+            }
+            ColumnarPathStore oldStore = columnarPathStore;
+            columnarPathStore = newStore;
+            if (oldStore != null && !oldStore.getFile().delete() && IsDebug.isDebug()) {
+                System.err.println("旧索引文件仍在使用中，将在下次启动时删除");
+            }
+            if (IsDebug.isDebug()) {
+                System.out.println("列式索引生成完成，共" + newStore.size() + "条记录，文件大小" + target.length() + "字节");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            isColumnarPathStoreRebuilding.set(false);
+        }
+    }
+
+    /**
+     * 获取列式索引
+     *
+     * @return 列式索引，未开启或还未生成时返回null
+     */
+    public ColumnarPathStore getColumnarPathStore() {
+        return columnarPathStore;
+    }
+
+    /**
+     * 修改列式索引，正在重新生成时同时记录修改
+     *
+     * @param change 修改
+     */
+    private void addToColumnarPathStore(IndexChange change) {
+        ColumnarPathStore store = columnarPathStore;
+        if (store == null) {
+            return;
+        }
+        if (isColumnarPathStoreRebuilding.get()) {
+            columnarChangesOnRebuilding.add(change);
+        }
+        applyColumnarChange(store, change);
+        if (store.getChangedNum() > COLUMNAR_REBUILD_THRESHOLD && !isColumnarPathStoreRebuilding.get()) {
+            CachedThreadPoolUtil.getInstance().executeIoTask(this::rebuildColumnarPathStore);
+        }
+    }
+
+    /**
+     * 从数据库中读取所有文件路径，建立新的三元组索引，完成后替换原来的索引
+     * 第一次建立完成前搜索仍然使用全表扫描，重新建立时原来的索引继续使用
+     * 建立期间的修改同时记录下来，替换前写入新的索引
+     */
+    private void initTrigramIndex() {
+        //重建索引后再次调用时，等待上一次建立完成后重新读取
+        synchronized (trigramLoadLock) {
+            loadTrigramIndex();
+        }
+    }
+
+    private void loadTrigramIndex() {
+        synchronized (trigramLock) {
+            trigramChangesOnLoading = new ArrayList<>();
+        }
+        long start = System.currentTimeMillis();
+        TrigramIndex newIndex = new TrigramIndex();
+        try {
+            //开始记录修改前的修改需要先写入数据库
+            executeAllCommands();
+            for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+                try (SQLiteUtil.ReadOnlyConnection reader = SQLiteUtil.borrowReadOnlyConnection();
+                     ResultSet resultSet = reader.getPreparedStatement("SELECT PATH, PRIORITY, PINYIN, ISDIR FROM list" + i + ";").executeQuery()) {
+                    while (resultSet.next()) {
+                        newIndex.add(resultSet.getString("PATH"), resultSet.getInt("PRIORITY"),
+                                resultSet.getString("PINYIN"), resultSet.getInt("ISDIR"));
+                    }
+                } catch (Exception throwables) {
+                    if (IsDebug.isDebug()) {
+                        throwables.printStackTrace();
+                    }
+                }
+            }
+        } finally {
+            synchronized (trigramLock) {
+                for (IndexChange change : trigramChangesOnLoading) {
+                    applyTrigramChange(newIndex, change);
+                }
+                trigramChangesOnLoading = null;
+                trigramIndex = newIndex;
+            }
+        }
+        isTrigramIndexReady.set(true);
+        if (IsDebug.isDebug()) {
+            System.out.println("三元组索引建立完成，共" + newIndex.size() + "条记录，用时" + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * 修改三元组索引，正在重新建立时同时记录修改
+     *
+     * @param change 修改
+     */
+    private void addToTrigramIndex(IndexChange change) {
+        synchronized (trigramLock) {
+            if (trigramChangesOnLoading != null) {
+                trigramChangesOnLoading.add(change);
+            }
+            applyTrigramChange(trigramIndex, change);
+        }
+    }
+
+    private static void applyTrigramChange(TrigramIndex index, IndexChange change) {
+        if (change.isAdd) {
+            index.add(change.path, change.priority, null, change.isDirectory);
+        } else {
+            index.remove(change.path);
+        }
+    }
+
+    private static void applyColumnarChange(ColumnarPathStore store, IndexChange change) {
+        if (change.isAdd) {
+            store.add(change.path, change.priority, change.isDirectory);
+        } else {
+            store.remove(change.path);
+        }
+    }
+
+    /**
+     * 通过三元组索引获取候选路径
+     *
+     * @param keywords 文件名关键字
+     * @return key为优先级，value为候选路径，返回null表示索引不可用，需要扫描数据库
+     */
+    public Map<Integer, List<TrigramIndex.Candidate>> getCandidatesByTrigram(Collection<String> keywords) {
+        if (!isTrigramIndexReady.get()) {
+            return null;
+        }
+        return trigramIndex.getCandidates(keywords);
+    }
+
+    /**
+     * 读取所有缓存到内存中，之后的搜索、检查是否存在以及计数都不再查询数据库
+     * 旧版本数据库中的缓存没有记录类型，读取时检查一次并写回数据库
+     */
+    private void initCache() {
+        try (PreparedStatement stmt = SQLiteUtil.getPreparedStatement("SELECT PATH, ISDIR FROM cache;");
              ResultSet resultSet = stmt.executeQuery()) {
-            cacheNum.set(resultSet.getInt(1));
+            while (resultSet.next()) {
+                String path = resultSet.getString("PATH");
+                int isDirectory = resultSet.getInt("ISDIR");
+                if (isDirectory == -1) {
+                    cacheMap.put(path, Files.isDirectory(Path.of(path)));
+                    addToPendingCacheCommands(path, true);
+                } else {
+                    cacheMap.put(path, isDirectory == 1);
+                }
+            }
         } catch (Exception throwables) {
             if (IsDebug.isDebug()) {
                 throwables.printStackTrace();
@@ -65,11 +525,14 @@ public class DatabaseService {
             EventManagement eventManagement = EventManagement.getInstance();
             try {
                 while (eventManagement.isNotMainExit()) {
-                    if (isExecuteImmediately.get()) {
-                        isExecuteImmediately.set(false);
+                    synchronized (commandLock) {
+                        while (!isExecuteImmediately.get() && eventManagement.isNotMainExit()) {
+                            commandLock.wait();
+                        }
+                    }
+                    if (isExecuteImmediately.compareAndSet(true, false)) {
                         executeAllCommands();
                     }
-                    TimeUnit.MILLISECONDS.sleep(20);
                 }
             } catch (InterruptedException ignored) {
             }
@@ -87,32 +550,38 @@ public class DatabaseService {
         return INSTANCE;
     }
 
-    private void deleteRecordsToDatabaseThread() {
+    /**
+     * 读取文件监控写入tmp文件夹的fileAdded.txt和fileRemoved.txt
+     * 只有文件被写入时才会被唤醒，数据库繁忙时暂停读取，修改保留在文件中，不会丢失
+     */
+    private void readChangesThread() {
         CachedThreadPoolUtil.getInstance().executeTask(() -> {
-            try (BufferedReader readerRemove =
-                         new BufferedReader(new InputStreamReader(
-                                 new FileInputStream(new File("tmp").getAbsolutePath() + File.separator + "fileRemoved.txt"),
-                                 StandardCharsets.UTF_8))) {
-                String tmp;
-                int fileCount = 0;
-                LinkedHashSet<String> deletePaths = new LinkedHashSet<>();
-                EventManagement eventManagement = EventManagement.getInstance();
+            Path tmp = Path.of("tmp").toAbsolutePath();
+            FileTailer addTailer = new FileTailer(tmp.resolve("fileAdded.txt"));
+            FileTailer removeTailer = new FileTailer(tmp.resolve("fileRemoved.txt"));
+            EventManagement eventManagement = EventManagement.getInstance();
+            try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+                tmp.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
                 while (eventManagement.isNotMainExit()) {
-                    if (status == Enums.DatabaseStatus.NORMAL) {
-                        while ((tmp = readerRemove.readLine()) != null) {
-                            fileCount++;
-                            deletePaths.add(tmp);
-                            if (fileCount > 3000) {
-                                break;
-                            }
-                        }
+                    waitForNotBusy();
+                    //先删除后添加，文件删除后又重新创建时不会丢失
+                    boolean hasMore = readChanges(removeTailer, false);
+                    hasMore |= readChanges(addTailer, true);
+                    if (hasMore) {
+                        continue;
                     }
-                    if (status == Enums.DatabaseStatus.NORMAL && !deletePaths.isEmpty()) {
-                        eventManagement.putEvent(new DeleteFromDatabaseEvent(deletePaths));
-                        deletePaths = new LinkedHashSet<>();
-                        fileCount = 0;
+                    LinkedHashSet<String> removeRemain = new LinkedHashSet<>();
+                    removeTailer.rotateIfNeeded(removeRemain::add);
+                    putChangesEvent(removeRemain, false);
+                    LinkedHashSet<String> addRemain = new LinkedHashSet<>();
+                    addTailer.rotateIfNeeded(addRemain::add);
+                    putChangesEvent(addRemain, true);
+                    //文件监控修改文件后唤醒，超时后也检查一次，防止丢失通知
+                    WatchKey watchKey = watchService.poll(1, TimeUnit.SECONDS);
+                    if (watchKey != null) {
+                        watchKey.pollEvents();
+                        watchKey.reset();
                     }
-                    TimeUnit.MILLISECONDS.sleep(10);
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -121,60 +590,107 @@ public class DatabaseService {
         });
     }
 
-    private void addRecordsToDatabaseThread() {
-        CachedThreadPoolUtil.getInstance().executeTask(() -> {
-            //检测文件添加线程
-            try (BufferedReader readerAdd =
-                         new BufferedReader(new InputStreamReader(
-                                 new FileInputStream(new File("tmp").getAbsolutePath() + File.separator + "fileAdded.txt"),
-                                 StandardCharsets.UTF_8))) {
-                String tmp;
-                int fileCount = 0;
-                LinkedHashSet<String> addPaths = new LinkedHashSet<>();
-                EventManagement eventManagement = EventManagement.getInstance();
-                while (eventManagement.isNotMainExit()) {
-                    if (status == Enums.DatabaseStatus.NORMAL) {
-                        while ((tmp = readerAdd.readLine()) != null) {
-                            fileCount++;
-                            addPaths.add(tmp);
-                            if (fileCount > 3000) {
-                                break;
-                            }
-                        }
-                    }
-                    if (status == Enums.DatabaseStatus.NORMAL && !addPaths.isEmpty()) {
-                        eventManagement.putEvent(new AddToDatabaseEvent(addPaths));
-                        addPaths = new LinkedHashSet<>();
-                        fileCount = 0;
-                    }
-                    TimeUnit.MILLISECONDS.sleep(10);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            } catch (InterruptedException ignored) {
+    /**
+     * 读取一批修改并发送
+     *
+     * @param tailer 文件
+     * @param isAdd  true为添加，false为删除
+     * @return true如果已经达到一批的上限，文件中可能还有未读取的修改
+     */
+    private boolean readChanges(FileTailer tailer, boolean isAdd) {
+        LinkedHashSet<String> paths = new LinkedHashSet<>();
+        int count = 0;
+        try {
+            count = tailer.readLines(MAX_CHANGES_PER_BATCH, paths::add);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        putChangesEvent(paths, isAdd);
+        return count >= MAX_CHANGES_PER_BATCH;
+    }
+
+    private void putChangesEvent(LinkedHashSet<String> paths, boolean isAdd) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        EventManagement eventManagement = EventManagement.getInstance();
+        if (isAdd) {
+            eventManagement.putEvent(new AddToDatabaseEvent(paths));
+        } else {
+            eventManagement.putEvent(new DeleteFromDatabaseEvent(paths));
+        }
+    }
+
+    /**
+     * 数据库正在重建、整理，或者还有太多修改未写入
+     * 文件监控在繁忙时应该暂停发送修改
+     *
+     * @return true如果需要暂停读取修改
+     */
+    public boolean isBusy() {
+        if (status != Enums.DatabaseStatus.NORMAL) {
+            return true;
+        }
+        synchronized (pendingLock) {
+            return pendingListCommands.size() >= MAX_SQL_NUM;
+        }
+    }
+
+    /**
+     * 数据库繁忙时阻塞，直到状态恢复为NORMAL并且等待写入的修改已经被取出
+     */
+    private void waitForNotBusy() throws InterruptedException {
+        EventManagement eventManagement = EventManagement.getInstance();
+        synchronized (busyLock) {
+            while (isBusy() && eventManagement.isNotMainExit()) {
+                executeImmediately();
+                busyLock.wait();
             }
-        });
+        }
     }
 
-    private void addDeleteSqlCommandByAscii(int asciiSum, String path) {
-        String command;
-        int asciiGroup = asciiSum / 100;
-        asciiGroup = Math.min(asciiGroup, 40);
-        String sql = "DELETE FROM %s where PATH=\"%s\";";
-        command = String.format(sql, "list" + asciiGroup, path);
-        if (command != null && isCommandNotRepeat(command)) {
-            addToCommandSet(new SQLWithTaskId(SqlTaskIds.DELETE_FROM_LIST, command));
+    private void notifyNotBusy() {
+        synchronized (busyLock) {
+            busyLock.notifyAll();
         }
     }
 
-    private void addAddSqlCommandByAscii(int asciiSum, String path, int priority) {
-        String commandTemplate = "INSERT OR IGNORE INTO %s VALUES(%d, \"%s\", %d)";
-        int asciiGroup = asciiSum / 100;
-        asciiGroup = Math.min(asciiGroup, 40);
-        String columnName = "list" + asciiGroup;
-        String command = String.format(commandTemplate, columnName, asciiSum, path, priority);
-        if (command != null && isCommandNotRepeat(command)) {
-            addToCommandSet(new SQLWithTaskId(SqlTaskIds.INSERT_TO_LIST, command));
+    private void addDeleteSqlCommand(String path) {
+        int key = partitioner.getKey(getFileName(path));
+        addToPendingListCommands(new PathCommand(path, false, key, partitioner.getPartition(key), 0, false));
+    }
+
+    private void addAddSqlCommand(String path, int priority, boolean isDirectory) {
+        int key = partitioner.getKey(getFileName(path));
+        addToPendingListCommands(new PathCommand(path, true, key, partitioner.getPartition(key), priority, isDirectory));
+    }
+
+    /**
+     * 添加文件记录的修改，同一个路径之前还未写入的操作会被覆盖
+     * 如先添加后删除同一个文件，最后只会执行删除
+     *
+     * @param command 修改
+     */
+    private void addToPendingListCommands(PathCommand command) {
+        int pendingNum;
+        synchronized (pendingLock) {
+            //先删除再添加，保证执行顺序为最后一次修改的顺序
+            pendingListCommands.remove(command.path);
+            pendingListCommands.put(command.path, command);
+            pendingNum = pendingListCommands.size();
+            if (listChangesOnRebuilding != null) {
+                listChangesOnRebuilding.add(command);
+            }
+        }
+        if (pendingNum >= MAX_SQL_NUM) {
+            executeImmediately();
+        }
+    }
+
+    private void addToPendingCacheCommands(String path, boolean isInsert) {
+        synchronized (pendingLock) {
+            pendingCacheCommands.remove(path);
+            pendingCacheCommands.put(path, isInsert);
         }
     }
 
@@ -186,52 +702,94 @@ public class DatabaseService {
         return "";
     }
 
-    private int getAscIISum(String path) {
-        if (path == null || path.isEmpty()) {
-            return 0;
-        }
-        return GetAscII.INSTANCE.getAscII(path);
+    private void removeFileFromDatabase(String path) {
+        IndexChange change = new IndexChange(path, false, 0, -1);
+        addToTrigramIndex(change);
+        addToColumnarPathStore(change);
+        addDeleteSqlCommand(path);
     }
 
     /**
-     * 检查要删除的文件是否还未添加
-     * 防止文件刚添加就被删除
+     * 删除文件夹以及文件夹中的所有记录
+     * 文件夹已经不存在，子路径从数据库中按PATH的范围查询，可以使用PATH的唯一索引，还未写入数据库的添加操作从等待队列中查找
      *
-     * @param path 待删除文件路径
-     * @return true如果待删除文件已经在数据库中
+     * @param folder 文件夹路径
      */
-    private boolean isRemoveFileInDatabase(String path) {
-        for (SQLWithTaskId each : commandSet) {
-            if (each.taskId == SqlTaskIds.INSERT_TO_LIST && each.sql.contains(path)) {
-                return false;
+    private void removeFolderFromDatabase(String folder) {
+        removeFileFromDatabase(folder);
+        String prefix = folder.endsWith(File.separator) ? folder : folder + File.separator;
+        //所有以prefix开头的字符串都在(prefix, prefix最后一个字符+1)之间
+        String upperBound = prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
+        ArrayList<String> children = new ArrayList<>();
+        synchronized (pendingLock) {
+            for (PathCommand each : pendingListCommands.values()) {
+                if (each.isInsert && each.path.startsWith(prefix)) {
+                    children.add(each.path);
+                }
+            }
+        }
+        for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+            try (SQLiteUtil.ReadOnlyConnection reader = SQLiteUtil.borrowReadOnlyConnection()) {
+                PreparedStatement pStmt = reader.getPreparedStatement("SELECT PATH FROM list" + i + " WHERE PATH > ? AND PATH < ?;");
+                pStmt.setString(1, prefix);
+                pStmt.setString(2, upperBound);
+                try (ResultSet resultSet = pStmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        children.add(resultSet.getString("PATH"));
+                    }
+                }
+            } catch (Exception e) {
+                if (IsDebug.isDebug()) {
+                    e.printStackTrace();
+                }
             }
         }
-        return true;
+        children.forEach(this::removeFileFromDatabase);
+        if (IsDebug.isDebug()) {
+            System.out.println("删除文件夹" + folder + "，共删除" + children.size() + "条子路径");
+        }
     }
 
-    private void removeFileFromDatabase(String path) {
-        int asciiSum = getAscIISum(getFileName(path));
-        if (isRemoveFileInDatabase(path)) {
-            addDeleteSqlCommandByAscii(asciiSum, path);
+    /**
+     * 判断已经被删除的路径在索引中是否记录为文件夹，文件已经不存在，无法再通过磁盘判断
+     * 三元组索引还未建立时从等待写入的修改和路径所在的表中查找，只查询一行
+     * 类型未知（旧版本数据库中ISDIR为-1）时按照文件处理，只删除该路径，不扫描所有表
+     *
+     * @param path 文件路径
+     * @return true如果确定是文件夹
+     */
+    public boolean isIndexedAsDirectory(String path) {
+        if (isTrigramIndexReady.get()) {
+            Integer isDirectory = trigramIndex.getIsDirectory(path);
+            return isDirectory != null && isDirectory == 1;
+        }
+        synchronized (pendingLock) {
+            PathCommand command = pendingListCommands.get(path);
+            if (command != null) {
+                return command.isInsert && command.isDirectory;
+            }
+        }
+        int key = partitioner.getKey(getFileName(path));
+        try (SQLiteUtil.ReadOnlyConnection reader = SQLiteUtil.borrowReadOnlyConnection()) {
+            PreparedStatement pStmt = reader.getPreparedStatement("SELECT ISDIR FROM list" + partitioner.getPartition(key) + " WHERE PATH=?;");
+            pStmt.setString(1, path);
+            try (ResultSet resultSet = pStmt.executeQuery()) {
+                return resultSet.next() && resultSet.getInt("ISDIR") == 1;
+            }
+        } catch (SQLException e) {
+            if (IsDebug.isDebug()) {
+                e.printStackTrace();
+            }
+            return false;
         }
     }
 
     private int getPriorityBySuffix(String suffix) {
-        String sqlTemplate = "select PRIORITY from priority where suffix=\"%s\"";
-        String sql = String.format(sqlTemplate, suffix);
-        try (PreparedStatement pStmt = SQLiteUtil.getPreparedStatement(sql)) {
-            ResultSet resultSet = pStmt.executeQuery();
-            if (resultSet.next()) {
-                String priority = resultSet.getString("PRIORITY");
-                return Integer.parseInt(priority);
-            }
-        } catch (Exception throwables) {
-            throwables.printStackTrace();
+        Integer priority = suffixPriorityMap.get(suffix);
+        if (priority != null) {
+            return priority;
         }
-        if (!"defaultPriority".equals(suffix)) {
-            return getPriorityBySuffix("defaultPriority");
-        }
-        return 0;
+        return suffixPriorityMap.getOrDefault("defaultPriority", 0);
     }
 
     private String getSuffixByPath(String path) {
@@ -240,35 +798,43 @@ public class DatabaseService {
     }
 
     private void addFileToDatabase(String path) {
-        int asciiSum = getAscIISum(getFileName(path));
-        addAddSqlCommandByAscii(asciiSum, path, getPriorityBySuffix(getSuffixByPath(path)));
+        int priority = getPriorityBySuffix(getSuffixByPath(path));
+        //文件刚被创建，属性通常已经被系统缓存
+        boolean isDirectory = new File(path).isDirectory();
+        IndexChange change = new IndexChange(path, true, priority, isDirectory ? 1 : 0);
+        addToTrigramIndex(change);
+        addToColumnarPathStore(change);
+        addAddSqlCommand(path, priority, isDirectory);
     }
 
     private void addFileToCache(String path) {
-        String command = "INSERT OR IGNORE INTO cache(PATH) VALUES(\"" + path + "\");";
-        if (isCommandNotRepeat(command)) {
-            addToCommandSet(new SQLWithTaskId(SqlTaskIds.INSERT_TO_CACHE, command));
-            if (IsDebug.isDebug()) {
-                System.out.println("添加" + path + "到缓存");
-            }
+        indexChangeLog.add(IndexChangeLog.ChangeType.CACHE_ADDED, path);
+        addToPendingCacheCommands(path, true);
+        if (IsDebug.isDebug()) {
+            System.out.println("添加" + path + "到缓存");
         }
     }
 
     private void removeFileFromCache(String path) {
-        String command = "DELETE from cache where PATH=" + "\"" + path + "\";";
-        if (isCommandNotRepeat(command)) {
-            addToCommandSet(new SQLWithTaskId(SqlTaskIds.DELETE_FROM_CACHE, command));
-            if (IsDebug.isDebug()) {
-                System.out.println("删除" + path + "到缓存");
-            }
+        indexChangeLog.add(IndexChangeLog.ChangeType.CACHE_REMOVED, path);
+        addToPendingCacheCommands(path, false);
+        if (IsDebug.isDebug()) {
+            System.out.println("删除" + path + "到缓存");
         }
     }
 
     private void executeImmediately() {
         isExecuteImmediately.set(true);
+        notifyCommandLock();
     }
 
-    private void executeAllCommands() {
+    private void notifyCommandLock() {
+        synchronized (commandLock) {
+            commandLock.notifyAll();
+        }
+    }
+
+    private synchronized void executeAllCommands() {
         if (!commandSet.isEmpty()) {
             LinkedHashSet<SQLWithTaskId> tempCommandSet = new LinkedHashSet<>(commandSet);
             Connection connection = SQLiteUtil.getConnection();
@@ -281,6 +847,9 @@ public class DatabaseService {
                             System.out.println("执行SQL命令--" + each.sql);
                             System.out.println("----------------------------------------------");
                         }
+                        for (int i = 0; i < each.params.length; i++) {
+                            pStmt.setString(i + 1, each.params[i]);
+                        }
                         pStmt.execute();
                     }
                 }
@@ -301,31 +870,155 @@ public class DatabaseService {
                 }
             }
         }
+        executePathCommands();
+        OpenHistoryService.getInstance().flush(SQLiteUtil.getConnection());
+        //唤醒waitForCommandSet()
+        notifyCommandLock();
     }
 
-    private void addToCommandSet(SQLWithTaskId sql) {
-        if (commandSet.size() < MAX_SQL_NUM) {
-            if (status == Enums.DatabaseStatus.MANUAL_UPDATE) {
-                System.err.println("正在搜索中");
+    /**
+     * 将等待写入的文件记录和缓存记录按表分组，使用缓存的PreparedStatement批量执行
+     */
+    private void executePathCommands() {
+        if (!isPartitionChecked) {
+            return;
+        }
+        LinkedHashMap<String, PathCommand> listCommands;
+        LinkedHashMap<String, Boolean> cacheCommands;
+        synchronized (pendingLock) {
+            if (pendingListCommands.isEmpty() && pendingCacheCommands.isEmpty()) {
                 return;
             }
-            commandSet.add(sql);
-        } else {
+            listCommands = pendingListCommands;
+            cacheCommands = pendingCacheCommands;
+            pendingListCommands = new LinkedHashMap<>();
+            pendingCacheCommands = new LinkedHashMap<>();
+        }
+        notifyNotBusy();
+        Connection connection = SQLiteUtil.getConnection();
+        long start = System.currentTimeMillis();
+        try {
+            prepareCachedStatements(connection);
+            connection.setAutoCommit(false);
+            //同一个路径只有一条操作，删除和添加之间的顺序不影响结果
+            boolean[] isDeleteUsed = new boolean[deleteStatements.length];
+            boolean[] isInsertUsed = new boolean[insertStatements.length];
+            for (PathCommand each : listCommands.values()) {
+                if (each.isInsert) {
+                    PreparedStatement insert = insertStatements[each.table];
+                    insert.setInt(1, each.key);
+                    insert.setString(2, each.path);
+                    insert.setInt(3, each.priority);
+                    insert.setInt(4, each.isDirectory ? 1 : 0);
+                    insert.setString(5, PinyinUtil.toSearchablePinyin(getFileName(each.path)));
+                    insert.addBatch();
+                    isInsertUsed[each.table] = true;
+                } else {
+                    PreparedStatement delete = deleteStatements[each.table];
+                    delete.setString(1, each.path);
+                    delete.addBatch();
+                    isDeleteUsed[each.table] = true;
+                }
+            }
+            for (int i = 0; i < isDeleteUsed.length; i++) {
+                if (isDeleteUsed[i]) {
+                    deleteStatements[i].executeBatch();
+                }
+                if (isInsertUsed[i]) {
+                    insertStatements[i].executeBatch();
+                }
+            }
+            boolean isCacheInsertUsed = false;
+            boolean isCacheDeleteUsed = false;
+            for (Map.Entry<String, Boolean> each : cacheCommands.entrySet()) {
+                String path = each.getKey();
+                if (each.getValue()) {
+                    Boolean isDirectory = cacheMap.get(path);
+                    insertCacheStatement.setString(1, path);
+                    insertCacheStatement.setInt(2, isDirectory == null ? -1 : (isDirectory ? 1 : 0));
+                    insertCacheStatement.addBatch();
+                    isCacheInsertUsed = true;
+                } else {
+                    deleteCacheStatement.setString(1, path);
+                    deleteCacheStatement.addBatch();
+                    isCacheDeleteUsed = true;
+                }
+            }
+            if (isCacheDeleteUsed) {
+                deleteCacheStatement.executeBatch();
+            }
+            if (isCacheInsertUsed) {
+                insertCacheStatement.executeBatch();
+            }
+            connection.commit();
+            //写入数据库后再记录修改，写入前扫描数据库的搜索看不到等待写入的文件，结果的版本不能比修改更新
+            for (PathCommand each : listCommands.values()) {
+                indexChangeLog.add(each.isInsert ? IndexChangeLog.ChangeType.FILE_ADDED : IndexChangeLog.ChangeType.FILE_REMOVED, each.path);
+            }
             if (IsDebug.isDebug()) {
-                System.err.println("添加sql语句" + sql + "失败，已达到最大上限");
+                System.out.println("写入" + listCommands.size() + "条文件记录，" + cacheCommands.size() +
+                        "条缓存记录，用时" + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            //撤销已经执行的部分，之后setAutoCommit(true)不会提交一半的修改
+            try {
+                connection.rollback();
+            } catch (SQLException throwables) {
+                throwables.printStackTrace();
+            }
+            clearCachedStatementsBatch();
+            //执行失败，放回等待队列，已经有新操作的路径以新操作为准
+            synchronized (pendingLock) {
+                listCommands.forEach(pendingListCommands::putIfAbsent);
+                cacheCommands.forEach(pendingCacheCommands::putIfAbsent);
+            }
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException throwables) {
+                throwables.printStackTrace();
             }
-            //立即处理sql语句
-            executeImmediately();
         }
     }
 
-    private boolean isCommandNotRepeat(String sql) {
-        for (SQLWithTaskId each : commandSet) {
-            if (each.sql.equals(sql)) {
-                return false;
+    private void prepareCachedStatements(Connection connection) throws SQLException {
+        if (statementConnection == connection) {
+            return;
+        }
+        for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+            insertStatements[i] = connection.prepareStatement(String.format(INSERT_LIST_SQL, i));
+            deleteStatements[i] = connection.prepareStatement("DELETE FROM list" + i + " WHERE PATH=?;");
+        }
+        insertCacheStatement = connection.prepareStatement("INSERT OR REPLACE INTO cache(PATH, ISDIR) VALUES(?, ?);");
+        deleteCacheStatement = connection.prepareStatement("DELETE FROM cache WHERE PATH=?;");
+        statementConnection = connection;
+    }
+
+    private void clearCachedStatementsBatch() {
+        try {
+            for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+                insertStatements[i].clearBatch();
+                deleteStatements[i].clearBatch();
             }
+            insertCacheStatement.clearBatch();
+            deleteCacheStatement.clearBatch();
+        } catch (SQLException | NullPointerException e) {
+            //连接已经失效，下次重新创建
+            statementConnection = null;
+        }
+    }
+
+    private void addToCommandSet(SQLWithTaskId sql) {
+        if (sql.taskId != SqlTaskIds.UPDATE_DB_INFO) {
+            //修改优先级等无法确定影响了哪些结果
+            indexChangeLog.invalidateAll();
+        }
+        commandSet.add(sql);
+        if (commandSet.size() >= MAX_SQL_NUM) {
+            //立即处理sql语句
+            executeImmediately();
         }
-        return true;
     }
 
     public Enums.DatabaseStatus getStatus() {
@@ -334,104 +1027,239 @@ public class DatabaseService {
 
     private void setStatus(Enums.DatabaseStatus status) {
         this.status = status;
+        notifyNotBusy();
     }
 
-    private void searchFile(String disks, String ignorePath) {
+    /**
+     * 遍历所有磁盘，将文件路径写入新的表中，每一批路径单独提交，只在写入时持有锁
+     * 遍历期间原来的表仍然可以搜索，遍历完成后将新的表替换原来的表，被取消或失败时删除新的表，原来的索引不受影响
+     *
+     * @param disks      磁盘
+     * @param ignorePath 忽略的文件夹
+     * @return true如果遍历完成并且已经替换，false如果被取消或失败
+     */
+    private boolean searchFile(String disks, String ignorePath) {
+        //遍历期间修改优先级不影响本次遍历
+        HashMap<String, Integer> suffixPriorityMap = new HashMap<>(this.suffixPriorityMap);
+        final int defaultPriority = suffixPriorityMap.getOrDefault("defaultPriority", 0);
+        DiskIndexer indexer = new DiskIndexer(ignorePath);
+        diskIndexer = indexer;
+        EventManagement eventManagement = EventManagement.getInstance();
+        Connection connection = SQLiteUtil.getConnection();
+        PreparedStatement[] inserts = new PreparedStatement[Partitioner.getTableNum()];
+        boolean isSwapped = false;
+        long start = System.currentTimeMillis();
         try {
-            searchByUSN(disks, ignorePath.toLowerCase());
-        } catch (IOException | InterruptedException e) {
+            synchronized (this) {
+                try (Statement stmt = connection.createStatement()) {
+                    for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+                        stmt.executeUpdate("DROP TABLE IF EXISTS " + NEW_LIST_TABLE_PREFIX + i + ";");
+                        stmt.executeUpdate("CREATE TABLE " + NEW_LIST_TABLE_PREFIX + i + " " + LIST_TABLE_COLUMNS + ";");
+                        inserts[i] = connection.prepareStatement(String.format(INSERT_NEW_LIST_SQL, i));
+                    }
+                }
+                //遍历期间的修改同时记录下来，替换前写入新的表
+                synchronized (pendingLock) {
+                    listChangesOnRebuilding = new ArrayList<>();
+                }
+            }
+            indexer.start(disks);
+            long lastProgressTime = start;
+            while (!indexer.isDone() && !indexer.isCancelled() && eventManagement.isNotMainExit()) {
+                DiskIndexer.Batch batch = indexer.poll(100, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    synchronized (this) {
+                        connection.setAutoCommit(false);
+                        try {
+                            for (int i = 0; i < batch.size(); i++) {
+                                String path = batch.getPath(i);
+                                int key = partitioner.getKey(getFileName(path));
+                                PreparedStatement insert = inserts[partitioner.getPartition(key)];
+                                insert.setInt(1, key);
+                                insert.setString(2, path);
+                                insert.setInt(3, suffixPriorityMap.getOrDefault(getSuffixByPath(path), defaultPriority));
+                                insert.setInt(4, batch.isDirectory(i) ? 1 : 0);
+                                insert.setString(5, PinyinUtil.toSearchablePinyin(getFileName(path)));
+                                insert.addBatch();
+                            }
+                            for (PreparedStatement insert : inserts) {
+                                insert.executeBatch();
+                            }
+                            connection.commit();
+                        } finally {
+                            connection.setAutoCommit(true);
+                        }
+                    }
+                }
+                if (System.currentTimeMillis() - lastProgressTime > 1000) {
+                    lastProgressTime = System.currentTimeMillis();
+                    eventManagement.putEvent(new UpdateDatabaseProgressEvent(indexer.getIndexedNum()));
+                }
+            }
+            if (!indexer.isDone()) {
+                indexer.cancel();
+            }
+            if (!indexer.isCancelled()) {
+                swapNewListTables(inserts);
+                isSwapped = true;
+            }
+            if (IsDebug.isDebug()) {
+                System.out.println("遍历磁盘完成，共" + indexer.getIndexedNum() + "个文件和文件夹，用时" +
+                        (System.currentTimeMillis() - start) + "ms" + (indexer.isCancelled() ? "，已取消" : ""));
+            }
+            return isSwapped;
+        } catch (SQLException | InterruptedException e) {
+            indexer.cancel();
             e.printStackTrace();
+            return false;
+        } finally {
+            diskIndexer = null;
+            synchronized (pendingLock) {
+                listChangesOnRebuilding = null;
+            }
+            for (PreparedStatement insert : inserts) {
+                try {
+                    if (insert != null) {
+                        insert.close();
+                    }
+                } catch (SQLException throwables) {
+                    throwables.printStackTrace();
+                }
+            }
+            if (!isSwapped) {
+                dropNewListTables();
+            }
         }
     }
 
-    private void createAllIndex() {
-        commandSet.add(new SQLWithTaskId(SqlTaskIds.CREATE_INDEX, "CREATE INDEX IF NOT EXISTS cache_index ON cache(PATH);"));
-        for (int i = 0; i <= Constants.ALL_TABLE_NUM; ++i) {
-            String createIndex = "CREATE INDEX IF NOT EXISTS list" + i + "_index ON list" + i + "(PRIORITY);";
-            commandSet.add(new SQLWithTaskId(SqlTaskIds.CREATE_INDEX, createIndex));
+    /**
+     * 将遍历期间的修改写入新的表，然后在同一个事务中删除原来的表并将新的表重命名
+     * 持有锁时不会有其他写入，只读连接在提交前看到的仍然是原来的表
+     *
+     * @param inserts 新的表的插入语句
+     * @throws SQLException 替换失败，原来的表不受影响
+     */
+    private synchronized void swapNewListTables(PreparedStatement[] inserts) throws SQLException {
+        //先将等待队列中的修改写入原来的表，这些修改已经记录在listChangesOnRebuilding中
+        executePathCommands();
+        ArrayList<PathCommand> changes;
+        synchronized (pendingLock) {
+            changes = listChangesOnRebuilding;
+            listChangesOnRebuilding = null;
+        }
+        Connection connection = SQLiteUtil.getConnection();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            if (changes != null) {
+                for (PathCommand each : changes) {
+                    if (each.isInsert) {
+                        PreparedStatement insert = inserts[each.table];
+                        insert.setInt(1, each.key);
+                        insert.setString(2, each.path);
+                        insert.setInt(3, each.priority);
+                        insert.setInt(4, each.isDirectory ? 1 : 0);
+                        insert.setString(5, PinyinUtil.toSearchablePinyin(getFileName(each.path)));
+                        insert.executeUpdate();
+                    } else {
+                        try (PreparedStatement delete = connection.prepareStatement(
+                                "DELETE FROM " + NEW_LIST_TABLE_PREFIX + each.table + " WHERE PATH=?;")) {
+                            delete.setString(1, each.path);
+                            delete.executeUpdate();
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+                stmt.executeUpdate("DROP TABLE IF EXISTS list" + i + ";");
+                stmt.executeUpdate("ALTER TABLE " + NEW_LIST_TABLE_PREFIX + i + " RENAME TO list" + i + ";");
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+            //缓存的语句指向原来的表，下次写入时重新创建
+            statementConnection = null;
         }
     }
 
-    private void searchByUSN(String paths, String ignorePath) throws IOException, InterruptedException {
-        File usnSearcher = new File("user/fileSearcherUSN.exe");
-        String absPath = usnSearcher.getAbsolutePath();
-        String start = absPath.substring(0, 2);
-        String end = "\"" + absPath.substring(2) + "\"";
-        File database = new File("data.db");
-        try (BufferedWriter buffW = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("user/MFTSearchInfo.dat"), StandardCharsets.UTF_8))) {
-            buffW.write(paths);
-            buffW.newLine();
-            buffW.write(database.getAbsolutePath());
-            buffW.newLine();
-            buffW.write(ignorePath);
-        }
-        String command = "cmd.exe /c " + start + end;
-        Runtime.getRuntime().exec(command, null, new File("user"));
-        waitForProcess("fileSearcherUSN.exe");
-    }
-
-    private boolean isTaskExist(String procName, StringBuilder strBuilder) throws IOException, InterruptedException {
-        if (!procName.isEmpty()) {
-            Process p = Runtime.getRuntime().exec("tasklist /FI \"IMAGENAME eq " + procName + "\"");
-            p.waitFor();
-            String eachLine;
-            try (BufferedReader buffr = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-                while ((eachLine = buffr.readLine()) != null) {
-                    strBuilder.append(eachLine);
-                }
+    private synchronized void dropNewListTables() {
+        try (Statement stmt = SQLiteUtil.getConnection().createStatement()) {
+            for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+                stmt.executeUpdate("DROP TABLE IF EXISTS " + NEW_LIST_TABLE_PREFIX + i + ";");
             }
-            return strBuilder.toString().contains(procName);
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
         }
-        return false;
     }
 
-    private void waitForProcess(@SuppressWarnings("SameParameterValue") String procName) throws IOException, InterruptedException {
-        StringBuilder strBuilder = new StringBuilder();
-        long start = System.currentTimeMillis();
-        while (isTaskExist(procName, strBuilder)) {
-            TimeUnit.MILLISECONDS.sleep(10);
-            if (System.currentTimeMillis() - start > 3 * 60 * 1000) {
-                System.err.printf("等待进程%s超时\n", procName);
-                String command = String.format("taskkill /im %s /f", procName);
-                Runtime.getRuntime().exec(command);
-                break;
+    /**
+     * 一次性读取所有后缀优先级，之后的修改同时写入内存和数据库
+     *
+     * @return key为后缀，value为优先级
+     */
+    private HashMap<String, Integer> getSuffixPriorityMap() {
+        HashMap<String, Integer> map = new HashMap<>();
+        try (PreparedStatement stmt = SQLiteUtil.getPreparedStatement("SELECT SUFFIX, PRIORITY FROM priority;");
+             ResultSet resultSet = stmt.executeQuery()) {
+            while (resultSet.next()) {
+                map.put(resultSet.getString("SUFFIX"), resultSet.getInt("PRIORITY"));
             }
-            strBuilder.delete(0, strBuilder.length());
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        }
+        return map;
+    }
+
+    private void createAllIndex() {
+        commandSet.add(new SQLWithTaskId(SqlTaskIds.CREATE_INDEX, "CREATE INDEX IF NOT EXISTS cache_index ON cache(PATH);"));
+        for (int i = 0; i <= Constants.ALL_TABLE_NUM; ++i) {
+            String createIndex = "CREATE INDEX IF NOT EXISTS list" + i + "_index ON list" + i + "(PRIORITY);";
+            commandSet.add(new SQLWithTaskId(SqlTaskIds.CREATE_INDEX, createIndex));
         }
     }
 
     private void updateLists(String ignorePath) {
         recreateDatabase();
         waitForCommandSet(SqlTaskIds.CREATE_TABLE);
-        SQLiteUtil.closeAll();
-        searchFile(AllConfigs.getInstance().getDisks(), ignorePath);
+        //先写入还未执行的修改，遍历完成后这些修改已经包含在数据库中
+        executeAllCommands();
+        boolean isDone = searchFile(AllConfigs.getInstance().getDisks(), ignorePath);
         createAllIndex();
 //        waitForCommandSet(SqlTaskIds.CREATE_INDEX);
-        try {
-            SQLiteUtil.initConnection("jdbc:sqlite:data.db");
-        } catch (SQLException throwables) {
-            throwables.printStackTrace();
+        if (!isDone) {
+            //取消或失败时原来的表没有被修改
+            return;
         }
+        //遍历时已经按照当前的分区方式写入
+        setStoredPartitionerName(partitioner.getName());
+        printRowsPerTable();
+        indexChangeLog.invalidateAll();
+        CachedThreadPoolUtil.getInstance().executeIoTask(this::initTrigramIndex);
+        rebuildColumnarPathStore();
         EventManagement.getInstance().putEvent(new ShowTaskBarMessageEvent(
                 TranslateUtil.getInstance().getTranslation("Info"),
                 TranslateUtil.getInstance().getTranslation("Search Done")));
     }
 
+    /**
+     * 等待commandSet中taskId的语句全部执行完成，每次写入完成后被唤醒检查，最多等待60秒
+     */
     private void waitForCommandSet(@SuppressWarnings("SameParameterValue") SqlTaskIds taskId) {
         try {
             EventManagement eventManagement = EventManagement.getInstance();
-            long tmpStartTime = System.currentTimeMillis();
-            while (eventManagement.isNotMainExit()) {
-                //等待
-                if (System.currentTimeMillis() - tmpStartTime > 60 * 1000) {
-                    System.err.println("等待SQL语句任务" + taskId + "处理超时");
-                    break;
-                }
+            final long deadline = System.currentTimeMillis() + 60 * 1000;
+            synchronized (commandLock) {
                 //判断commandSet中是否还有taskId存在
-                if (!isTaskExistInCommandSet(taskId)) {
-                    break;
+                while (isTaskExistInCommandSet(taskId) && eventManagement.isNotMainExit()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        System.err.println("等待SQL语句任务" + taskId + "处理超时");
+                        break;
+                    }
+                    commandLock.wait(remaining);
                 }
-                TimeUnit.MILLISECONDS.sleep(10);
             }
         } catch (InterruptedException ignored) {
         }
@@ -443,7 +1271,35 @@ public class DatabaseService {
      * @return cache num
      */
     public int getCacheNum() {
-        return cacheNum.get();
+        return cacheMap.size();
+    }
+
+    /**
+     * 检查文件是否已经在缓存中
+     *
+     * @param path 文件路径
+     * @return true如果存在
+     */
+    public boolean isCacheExist(String path) {
+        return cacheMap.containsKey(path);
+    }
+
+    /**
+     * 获取所有缓存，返回的集合不能修改，遍历时缓存仍然可能被修改
+     *
+     * @return key为文件路径，value为是否为文件夹
+     */
+    public Map<String, Boolean> getCache() {
+        return Collections.unmodifiableMap(cacheMap);
+    }
+
+    /**
+     * 获取索引的修改记录，文件记录、缓存或者优先级发生变化后版本会增加
+     *
+     * @return 修改记录
+     */
+    public IndexChangeLog getIndexChangeLog() {
+        return indexChangeLog;
     }
 
     private boolean isTaskExistInCommandSet(SqlTaskIds taskId) {
@@ -464,41 +1320,64 @@ public class DatabaseService {
         //创建新表
         String sql = "CREATE TABLE IF NOT EXISTS list";
         for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
-            String command = sql + i + " " + "(ASCII INT, PATH text unique, PRIORITY INT)" + ";";
+            String command = sql + i + " " + LIST_TABLE_COLUMNS + ";";
             commandSet.add(new SQLWithTaskId(SqlTaskIds.CREATE_TABLE, command));
         }
         executeImmediately();
     }
 
     private void checkTimeAndSendExecuteSqlSignalThread() {
-        CachedThreadPoolUtil.getInstance().executeTask(() -> {
-            // 时间检测线程
-            final long updateTimeLimit = AllConfigs.getInstance().getUpdateTimeLimit();
-            try {
-                EventManagement eventManagement = EventManagement.getInstance();
-                while (eventManagement.isNotMainExit()) {
-                    if (status == Enums.DatabaseStatus.NORMAL) {
-                        eventManagement.putEvent(new ExecuteSQLEvent());
-                    }
-                    TimeUnit.SECONDS.sleep(updateTimeLimit);
-                }
-            } catch (InterruptedException ignored) {
+        // 时间检测，使用定时线程池，不会被搜索任务占用
+        final long updateTimeLimit = Math.max(1, AllConfigs.getInstance().getUpdateTimeLimit());
+        EventManagement eventManagement = EventManagement.getInstance();
+        CachedThreadPoolUtil.getInstance().scheduleAtFixedRate(() -> {
+            if (eventManagement.isNotMainExit() && status == Enums.DatabaseStatus.NORMAL) {
+                eventManagement.putEvent(new ExecuteSQLEvent());
             }
-        });
+        }, updateTimeLimit, updateTimeLimit, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 定时将WAL写回数据库文件，重建索引、迁移分区和整理数据库时不执行
+     * 检查点需要等待正在执行的写入，在io线程中执行，不占用定时线程
+     */
+    private void walCheckpointThread() {
+        EventManagement eventManagement = EventManagement.getInstance();
+        CachedThreadPoolUtil.getInstance().scheduleAtFixedRate(() -> {
+            if (eventManagement.isNotMainExit() && status == Enums.DatabaseStatus.NORMAL) {
+                CachedThreadPoolUtil.getInstance().executeIoTask(this::checkpoint);
+            }
+        }, WAL_CHECKPOINT_PERIOD_MINUTES, WAL_CHECKPOINT_PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private synchronized void checkpoint() {
+        if (status != Enums.DatabaseStatus.NORMAL) {
+            return;
+        }
+        try {
+            SQLiteUtil.checkpoint();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
     }
 
     @EventRegister(registerClass = AddToCacheEvent.class)
     private static void addToCacheEvent(Event event) {
         DatabaseService databaseService = getInstance();
-        databaseService.addFileToCache(((AddToCacheEvent) event).path);
-        databaseService.cacheNum.incrementAndGet();
+        String path = ((AddToCacheEvent) event).path;
+        //文件刚被打开，属性已经被系统缓存
+        if (databaseService.cacheMap.putIfAbsent(path, Files.isDirectory(Path.of(path))) == null) {
+            databaseService.addFileToCache(path);
+        }
     }
 
     @EventRegister(registerClass = DeleteFromCacheEvent.class)
     private static void deleteFromCacheEvent(Event event) {
         DatabaseService databaseService = getInstance();
-        databaseService.removeFileFromCache(((DeleteFromCacheEvent) event).path);
-        databaseService.cacheNum.decrementAndGet();
+        String path = ((DeleteFromCacheEvent) event).path;
+        if (databaseService.cacheMap.remove(path) != null) {
+            databaseService.removeFileFromCache(path);
+        }
     }
 
     @EventRegister(registerClass = AddToDatabaseEvent.class)
@@ -518,6 +1397,14 @@ public class DatabaseService {
         }
     }
 
+    @EventRegister(registerClass = DeleteFolderFromDatabaseEvent.class)
+    private static void deleteFolderFromDatabaseEvent(Event event) {
+        DatabaseService databaseService = getInstance();
+        for (Object each : ((DeleteFolderFromDatabaseEvent) event).getFolders()) {
+            databaseService.removeFolderFromDatabase((String) each);
+        }
+    }
+
     @EventRegister(registerClass = UpdateDatabaseEvent.class)
     private static void updateDatabaseEvent(Event event) {
         DatabaseService databaseService = getInstance();
@@ -526,6 +1413,14 @@ public class DatabaseService {
         databaseService.setStatus(Enums.DatabaseStatus.NORMAL);
     }
 
+    @EventRegister(registerClass = StopUpdateDatabaseEvent.class)
+    private static void stopUpdateDatabaseEvent(Event event) {
+        DiskIndexer indexer = getInstance().diskIndexer;
+        if (indexer != null) {
+            indexer.cancel();
+        }
+    }
+
     @EventRegister(registerClass = ExecuteSQLEvent.class)
     private static void executeSQLEvent(Event event) {
         getInstance().executeImmediately();
@@ -554,6 +1449,7 @@ public class DatabaseService {
         String suffix = event1.suffix;
         int priority = event1.priority;
         DatabaseService databaseService = getInstance();
+        databaseService.suffixPriorityMap.put(suffix, priority);
         databaseService.addToCommandSet(
                 new SQLWithTaskId(SqlTaskIds.UPDATE_SUFFIX,
                         String.format("INSERT INTO priority VALUES(\"%s\", %d);", suffix, priority)));
@@ -562,6 +1458,8 @@ public class DatabaseService {
     @EventRegister(registerClass = ClearSuffixPriorityMapEvent.class)
     private static void clearSuffixPriorityMapEvent(Event event) {
         DatabaseService databaseService = getInstance();
+        databaseService.suffixPriorityMap.clear();
+        databaseService.suffixPriorityMap.put("defaultPriority", 0);
         databaseService.addToCommandSet(new SQLWithTaskId(SqlTaskIds.UPDATE_SUFFIX, "DELETE FROM priority;"));
         databaseService.addToCommandSet(
                 new SQLWithTaskId(SqlTaskIds.UPDATE_SUFFIX, "INSERT INTO priority VALUES(\"defaultPriority\", 0);"));
@@ -571,39 +1469,89 @@ public class DatabaseService {
     private static void deleteFromSuffixPriorityMapEvent(Event event) {
         DeleteFromSuffixPriorityMapEvent delete = (DeleteFromSuffixPriorityMapEvent) event;
         DatabaseService databaseService = getInstance();
+        databaseService.suffixPriorityMap.remove(delete.suffix);
         databaseService.addToCommandSet(new SQLWithTaskId(SqlTaskIds.UPDATE_SUFFIX,
                 String.format("DELETE FROM priority where SUFFIX=\"%s\"", delete.suffix)));
     }
 
     @EventRegister(registerClass = UpdateSuffixPriorityEvent.class)
     private static void updateSuffixPriorityEvent(Event event) {
-        EventManagement eventManagement = EventManagement.getInstance();
         UpdateSuffixPriorityEvent update = (UpdateSuffixPriorityEvent) event;
         String origin = update.originSuffix;
         String newSuffix = update.newSuffix;
         int newNum = update.newPriority;
-        eventManagement.putEvent(new DeleteFromSuffixPriorityMapEvent(origin));
-        eventManagement.putEvent(new AddToSuffixPriorityMapEvent(newSuffix, newNum));
+        DatabaseService databaseService = getInstance();
+        //在同一个事件中先删除后添加，异步事件可能被不同线程乱序处理，后缀不变时会被误删
+        databaseService.suffixPriorityMap.remove(origin);
+        databaseService.suffixPriorityMap.put(newSuffix, newNum);
+        databaseService.addToCommandSet(new SQLWithTaskId(SqlTaskIds.UPDATE_SUFFIX,
+                String.format("DELETE FROM priority where SUFFIX=\"%s\"", origin)));
+        databaseService.addToCommandSet(
+                new SQLWithTaskId(SqlTaskIds.UPDATE_SUFFIX,
+                        String.format("INSERT INTO priority VALUES(\"%s\", %d);", newSuffix, newNum)));
     }
 
     @EventListener(registerClass = RestartEvent.class)
     private static void restartEvent() {
+        //关闭前写入还未保存的打开记录
+        OpenHistoryService.getInstance().flush(SQLiteUtil.getConnection());
         SQLiteUtil.closeAll();
+        //唤醒等待数据库空闲和等待写入的线程，使其退出
+        getInstance().notifyNotBusy();
+        getInstance().notifyCommandLock();
     }
 
     private static class SQLWithTaskId {
         private final String sql;
         private final SqlTaskIds taskId;
+        //按顺序绑定到sql中的?
+        private final String[] params;
 
-        private SQLWithTaskId(SqlTaskIds taskId, String sql) {
+        private SQLWithTaskId(SqlTaskIds taskId, String sql, String... params) {
             this.sql = sql;
             this.taskId = taskId;
+            this.params = params;
+        }
+    }
+
+    private static class PathCommand {
+        private final String path;
+        private final boolean isInsert;
+        private final int key;
+        private final int table;
+        private final int priority;
+        private final boolean isDirectory;
+
+        private PathCommand(String path, boolean isInsert, int key, int table, int priority, boolean isDirectory) {
+            this.path = path;
+            this.isInsert = isInsert;
+            this.key = key;
+            this.table = table;
+            this.priority = priority;
+            this.isDirectory = isDirectory;
+        }
+    }
+
+    /**
+     * 三元组索引和列式索引的一条修改，索引重新建立期间记录下来，替换前重新应用
+     */
+    private static final class IndexChange {
+        private final String path;
+        private final boolean isAdd;
+        private final int priority;
+        //1为文件夹，0为文件，删除时忽略
+        private final int isDirectory;
+
+        private IndexChange(String path, boolean isAdd, int priority, int isDirectory) {
+            this.path = path;
+            this.isAdd = isAdd;
+            this.priority = priority;
+            this.isDirectory = isDirectory;
         }
     }
 
     private enum SqlTaskIds {
-        DELETE_FROM_LIST, DELETE_FROM_CACHE, INSERT_TO_LIST, INSERT_TO_CACHE,
-        CREATE_INDEX, CREATE_TABLE, DROP_TABLE, DROP_INDEX, UPDATE_SUFFIX
+        CREATE_INDEX, CREATE_TABLE, DROP_TABLE, DROP_INDEX, UPDATE_SUFFIX, UPDATE_DB_INFO
     }
 }
 
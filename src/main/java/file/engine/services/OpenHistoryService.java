@@ -0,0 +1,152 @@
+package file.engine.services;
+
+import file.engine.IsDebug;
+import file.engine.annotation.EventRegister;
+import file.engine.event.handler.Event;
+import file.engine.event.handler.impl.database.AddOpenHistoryEvent;
+import file.engine.services.index.IndexChangeLog;
+import file.engine.utils.SQLiteUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录每个文件的打开次数和最后打开时间，用于计算frecency（频率+最近使用）得分
+ * 所有记录常驻内存，搜索时直接读取，修改随DatabaseService定时写入history表
+ */
+public class OpenHistoryService {
+    private final ConcurrentHashMap<String, OpenRecord> records = new ConcurrentHashMap<>();
+    private final Set<String> changedPaths = ConcurrentHashMap.newKeySet();
+    private static final int MAX_SCORE = 1 << 20;
+
+    private static volatile OpenHistoryService INSTANCE = null;
+
+    private static class OpenRecord {
+        private final int openCount;
+        private final long lastOpenTime;
+
+        private OpenRecord(int openCount, long lastOpenTime) {
+            this.openCount = openCount;
+            this.lastOpenTime = lastOpenTime;
+        }
+    }
+
+    private OpenHistoryService() {
+        readHistory();
+    }
+
+    public static OpenHistoryService getInstance() {
+        if (INSTANCE == null) {
+            synchronized (OpenHistoryService.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new OpenHistoryService();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private void readHistory() {
+        try (PreparedStatement stmt = SQLiteUtil.getPreparedStatement("SELECT PATH, OPEN_COUNT, LAST_OPEN_TIME FROM history;");
+             ResultSet resultSet = stmt.executeQuery()) {
+            while (resultSet.next()) {
+                records.put(resultSet.getString("PATH"),
+                        new OpenRecord(resultSet.getInt("OPEN_COUNT"), resultSet.getLong("LAST_OPEN_TIME")));
+            }
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        }
+        if (IsDebug.isDebug()) {
+            System.out.println("已读取" + records.size() + "条打开记录");
+        }
+    }
+
+    private void recordOpen(String path) {
+        long now = System.currentTimeMillis();
+        records.compute(path, (k, v) -> v == null ? new OpenRecord(1, now) : new OpenRecord(v.openCount + 1, now));
+        changedPaths.add(path);
+        //得分变化后包含该文件的搜索结果需要重新排序
+        DatabaseService.getInstance().getIndexChangeLog().add(IndexChangeLog.ChangeType.RANK_CHANGED, path);
+    }
+
+    /**
+     * 计算文件的frecency得分，打开次数乘以最后一次打开时间对应的权重，越近打开权重越高
+     * 与Firefox地址栏的计算方式类似，没有打开记录时为0
+     *
+     * @param path 文件路径
+     * @return 得分，不超过MAX_SCORE
+     */
+    public int getScore(String path) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        OpenRecord record = records.get(path);
+        if (record == null) {
+            return 0;
+        }
+        long days = TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis() - record.lastOpenTime);
+        int weight;
+        if (days <= 4) {
+            weight = 100;
+        } else if (days <= 14) {
+            weight = 70;
+        } else if (days <= 31) {
+            weight = 50;
+        } else if (days <= 90) {
+            weight = 30;
+        } else {
+            weight = 10;
+        }
+        return (int) Math.min((long) record.openCount * weight, MAX_SCORE);
+    }
+
+    /**
+     * 将修改过的记录写入数据库，由DatabaseService在写入其他修改时调用，与其他写入使用同一个连接串行执行
+     *
+     * @param connection 数据库连接
+     */
+    void flush(Connection connection) {
+        if (changedPaths.isEmpty()) {
+            return;
+        }
+        ArrayList<String> paths = new ArrayList<>(changedPaths);
+        changedPaths.removeAll(paths);
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement("INSERT OR REPLACE INTO history(PATH, OPEN_COUNT, LAST_OPEN_TIME) VALUES(?, ?, ?);")) {
+                for (String each : paths) {
+                    OpenRecord record = records.get(each);
+                    if (record == null) {
+                        continue;
+                    }
+                    stmt.setString(1, each);
+                    stmt.setInt(2, record.openCount);
+                    stmt.setLong(3, record.lastOpenTime);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            //写入失败，下次重新写入
+            changedPaths.addAll(paths);
+            e.printStackTrace();
+        }
+    }
+
+    @EventRegister(registerClass = AddOpenHistoryEvent.class)
+    private static void addOpenHistoryEvent(Event event) {
+        getInstance().recordOpen(((AddOpenHistoryEvent) event).path);
+    }
+}
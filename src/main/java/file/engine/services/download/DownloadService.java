@@ -50,7 +50,7 @@ public class DownloadService {
             downloadManager.setDownloadDone();
             return;
         }
-        CachedThreadPoolUtil.getInstance().executeTask(downloadManager::download);
+        CachedThreadPoolUtil.getInstance().executeIoTask(downloadManager::download);
         downloadManagerSet.add(downloadManager);
     }
 
@@ -0,0 +1,390 @@
+package file.engine.services.index;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 列式存储的文件路径索引，通过内存映射读取，不占用堆内存
+ * <p>
+ * 文件结构：
+ * 文件头 -> 优先级区间 -> 父文件夹字典（前缀压缩） -> 每条记录的父文件夹id -> 每条记录的类型 -> 文件名块偏移 -> 文件名（前缀压缩）
+ * 记录按照优先级从高到低、父文件夹、文件名排序，每个优先级的记录是连续的一段，扫描某个优先级时只需要读取该区间
+ * 文件名每BLOCK_SIZE条重新开始前缀压缩，可以从任意块开始解码
+ * <p>
+ * 索引文件建立后不再修改，之后的添加和删除保存在内存中，在扫描时合并，累计到一定数量后重新生成索引文件
+ */
+public class ColumnarPathStore {
+    private static final int MAGIC = 0x46454350;
+    //版本2增加了每条记录的类型，旧版本的索引文件打开失败后重新生成
+    private static final int VERSION = 2;
+    private static final int BLOCK_SIZE = 16;
+    private static final int HEADER_SIZE = 4 * 5 + 8 * 4;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final String[] parents;
+    private final int recordNum;
+    private final LinkedHashMap<Integer, int[]> priorityRanges = new LinkedHashMap<>();
+    private final int parentIdOffset;
+    private final int isDirectoryOffset;
+    private final int blockOffsetsOffset;
+    private final int nameOffset;
+    //value为优先级和类型
+    private final ConcurrentHashMap<String, int[]> addedPaths = new ConcurrentHashMap<>();
+    private final Set<String> removedPaths = ConcurrentHashMap.newKeySet();
+
+    private ColumnarPathStore(File file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a valid index file: " + file);
+        }
+        int parentNum = buffer.getInt(8);
+        recordNum = buffer.getInt(12);
+        int rangeNum = buffer.getInt(16);
+        int parentSectionOffset = (int) buffer.getLong(20);
+        parentIdOffset = (int) buffer.getLong(28);
+        isDirectoryOffset = (int) buffer.getLong(36);
+        blockOffsetsOffset = (int) buffer.getLong(44);
+        nameOffset = blockOffsetsOffset + ((recordNum + BLOCK_SIZE - 1) / BLOCK_SIZE) * 4;
+        int pos = HEADER_SIZE;
+        for (int i = 0; i < rangeNum; i++) {
+            int priority = buffer.getInt(pos);
+            int start = buffer.getInt(pos + 4);
+            int end = buffer.getInt(pos + 8);
+            priorityRanges.put(priority, new int[]{start, end});
+            pos += 12;
+        }
+        //父文件夹数量远少于文件数量，直接读取到内存中
+        parents = new String[parentNum];
+        int[] position = {parentSectionOffset};
+        byte[] last = new byte[256];
+        for (int i = 0; i < parentNum; i++) {
+            int shared = readVarInt(position);
+            int suffixLength = readVarInt(position);
+            if (shared + suffixLength > last.length) {
+                last = Arrays.copyOf(last, (shared + suffixLength) << 1);
+            }
+            for (int j = 0; j < suffixLength; j++) {
+                last[shared + j] = buffer.get(position[0]++);
+            }
+            parents[i] = new String(last, 0, shared + suffixLength, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 打开索引文件
+     *
+     * @param file 索引文件
+     * @return ColumnarPathStore
+     * @throws IOException 文件损坏或无法读取
+     */
+    public static ColumnarPathStore open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mappedByteBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ColumnarPathStore(file, mappedByteBuffer);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 获取索引文件中的记录数量加上内存中新增的记录数量
+     *
+     * @return 记录数量
+     */
+    public int size() {
+        return recordNum + addedPaths.size() - removedPaths.size();
+    }
+
+    /**
+     * 索引文件建立后发生变化的数量，用于判断是否需要重新生成索引文件
+     *
+     * @return 变化数量
+     */
+    public int getChangedNum() {
+        return addedPaths.size() + removedPaths.size();
+    }
+
+    /**
+     * 添加路径
+     *
+     * @param path        文件路径
+     * @param priority    优先级
+     * @param isDirectory 1为文件夹，0为文件，-1为未知
+     */
+    public void add(String path, int priority, int isDirectory) {
+        removedPaths.remove(path);
+        addedPaths.put(path, new int[]{priority, isDirectory});
+    }
+
+    public void remove(String path) {
+        addedPaths.remove(path);
+        removedPaths.add(path);
+    }
+
+    /**
+     * 判断路径是否已经在索引文件建立后被删除，扫描到的路径需要经过该检查
+     *
+     * @param path 文件路径
+     * @return true如果已被删除
+     */
+    public boolean isRemoved(String path) {
+        return !removedPaths.isEmpty() && removedPaths.contains(path);
+    }
+
+    public String getParent(int parentId) {
+        return parents[parentId];
+    }
+
+    /**
+     * 通过父文件夹id和文件名拼接完整路径
+     *
+     * @param parentId 父文件夹id
+     * @param name     文件名的utf-8编码
+     * @param length   文件名长度
+     * @return 完整路径
+     */
+    public String getPath(int parentId, byte[] name, int length) {
+        return parents[parentId] + new String(name, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 扫描某个优先级的所有记录，文件名直接从映射的内存中解码到可复用的缓冲区，不会为每条记录创建String
+     *
+     * @param priority 优先级
+     * @param visitor  返回false则停止扫描
+     */
+    public void scan(int priority, RecordVisitor visitor) {
+        int[] range = priorityRanges.get(priority);
+        if (range == null) {
+            return;
+        }
+        int start = range[0];
+        int end = range[1];
+        int block = start / BLOCK_SIZE;
+        int[] position = {nameOffset + buffer.getInt(blockOffsetsOffset + block * 4)};
+        byte[] name = new byte[512];
+        int length = 0;
+        for (int i = block * BLOCK_SIZE; i < end; i++) {
+            int shared = buffer.get(position[0]++) & 0xff;
+            int suffixLength = readVarInt(position);
+            if (shared + suffixLength > name.length) {
+                name = Arrays.copyOf(name, (shared + suffixLength) << 1);
+            }
+            for (int j = 0; j < suffixLength; j++) {
+                name[shared + j] = buffer.get(position[0]++);
+            }
+            length = shared + suffixLength;
+            if (i < start) {
+                continue;
+            }
+            if (!visitor.visit(buffer.getInt(parentIdOffset + i * 4), name, length, buffer.get(isDirectoryOffset + i))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 遍历索引文件建立后添加的路径
+     *
+     * @param priority 优先级
+     * @param consumer 文件路径和类型，1为文件夹，0为文件，-1为未知
+     */
+    public void forEachAdded(int priority, ObjIntConsumer<String> consumer) {
+        addedPaths.forEach((path, record) -> {
+            if (record[0] == priority) {
+                consumer.accept(path, record[1]);
+            }
+        });
+    }
+
+    private int readVarInt(int[] position) {
+        int ret = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position[0]++);
+            ret |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return ret;
+    }
+
+    public interface RecordVisitor {
+        /**
+         * 访问一条记录
+         *
+         * @param parentId    父文件夹id
+         * @param name        文件名utf-8编码，缓冲区会被复用
+         * @param length      文件名长度
+         * @param isDirectory 1为文件夹，0为文件，-1为未知
+         * @return false则停止扫描
+         */
+        boolean visit(int parentId, byte[] name, int length, int isDirectory);
+    }
+
+    /**
+     * 用于生成索引文件
+     */
+    public static class Builder {
+        private final HashMap<String, Integer> parentMap = new HashMap<>();
+        private final TreeMap<Integer, ArrayList<Record>> priorityMap = new TreeMap<>(Comparator.reverseOrder());
+
+        public void add(String path, int priority, int isDirectory) {
+            //父文件夹保留末尾的分隔符，直接拼接文件名即可得到完整路径
+            int index = path.lastIndexOf(File.separator);
+            String parent = path.substring(0, index + 1);
+            String name = path.substring(index + 1);
+            Integer parentId = parentMap.computeIfAbsent(parent, k -> parentMap.size());
+            priorityMap.computeIfAbsent(priority, k -> new ArrayList<>())
+                    .add(new Record(parentId, name.getBytes(StandardCharsets.UTF_8), (byte) isDirectory));
+        }
+
+        /**
+         * 写入索引文件
+         *
+         * @param target 目标文件
+         * @throws IOException 写入失败或索引文件超过2GB
+         */
+        public void write(File target) throws IOException {
+            //父文件夹按照字典序重新编号，方便前缀压缩
+            String[] sortedParents = parentMap.keySet().toArray(new String[0]);
+            Arrays.sort(sortedParents);
+            int[] newParentIds = new int[sortedParents.length];
+            for (int i = 0; i < sortedParents.length; i++) {
+                newParentIds[parentMap.get(sortedParents[i])] = i;
+            }
+            ByteArrayOutputStream parentSection = new ByteArrayOutputStream();
+            byte[] last = new byte[0];
+            for (String each : sortedParents) {
+                byte[] bytes = each.getBytes(StandardCharsets.UTF_8);
+                int shared = sharedPrefixLength(last, last.length, bytes, Integer.MAX_VALUE);
+                writeVarInt(parentSection, shared);
+                writeVarInt(parentSection, bytes.length - shared);
+                parentSection.write(bytes, shared, bytes.length - shared);
+                last = bytes;
+            }
+
+            int recordNum = 0;
+            for (ArrayList<Record> records : priorityMap.values()) {
+                for (Record each : records) {
+                    each.parentId = newParentIds[each.parentId];
+                }
+                records.sort((o1, o2) -> {
+                    if (o1.parentId != o2.parentId) {
+                        return Integer.compare(o1.parentId, o2.parentId);
+                    }
+                    return Arrays.compare(o1.name, o2.name);
+                });
+                recordNum += records.size();
+            }
+
+            ByteArrayOutputStream rangeSection = new ByteArrayOutputStream();
+            ByteArrayOutputStream parentIdSection = new ByteArrayOutputStream();
+            ByteArrayOutputStream isDirectorySection = new ByteArrayOutputStream();
+            ByteArrayOutputStream blockOffsetSection = new ByteArrayOutputStream();
+            ByteArrayOutputStream nameSection = new ByteArrayOutputStream();
+            int count = 0;
+            byte[] lastName = new byte[0];
+            for (Map.Entry<Integer, ArrayList<Record>> entry : priorityMap.entrySet()) {
+                writeInt(rangeSection, entry.getKey());
+                writeInt(rangeSection, count);
+                for (Record each : entry.getValue()) {
+                    if (count % BLOCK_SIZE == 0) {
+                        writeInt(blockOffsetSection, nameSection.size());
+                        lastName = new byte[0];
+                    }
+                    writeInt(parentIdSection, each.parentId);
+                    isDirectorySection.write(each.isDirectory);
+                    int shared = sharedPrefixLength(lastName, lastName.length, each.name, 255);
+                    nameSection.write(shared);
+                    writeVarInt(nameSection, each.name.length - shared);
+                    nameSection.write(each.name, shared, each.name.length - shared);
+                    lastName = each.name;
+                    count++;
+                }
+                writeInt(rangeSection, count);
+            }
+
+            long parentSectionOffset = HEADER_SIZE + rangeSection.size();
+            long parentIdOffset = parentSectionOffset + parentSection.size();
+            long isDirectoryOffset = parentIdOffset + parentIdSection.size();
+            long blockOffsetsOffset = isDirectoryOffset + isDirectorySection.size();
+            long total = blockOffsetsOffset + blockOffsetSection.size() + nameSection.size();
+            if (total > Integer.MAX_VALUE) {
+                throw new IOException("Index file is too large");
+            }
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+                ByteArrayOutputStream header = new ByteArrayOutputStream();
+                writeInt(header, MAGIC);
+                writeInt(header, VERSION);
+                writeInt(header, sortedParents.length);
+                writeInt(header, recordNum);
+                writeInt(header, priorityMap.size());
+                writeLong(header, parentSectionOffset);
+                writeLong(header, parentIdOffset);
+                writeLong(header, isDirectoryOffset);
+                writeLong(header, blockOffsetsOffset);
+                header.writeTo(out);
+                rangeSection.writeTo(out);
+                parentSection.writeTo(out);
+                parentIdSection.writeTo(out);
+                isDirectorySection.writeTo(out);
+                blockOffsetSection.writeTo(out);
+                nameSection.writeTo(out);
+            }
+        }
+
+        private static int sharedPrefixLength(byte[] a, int aLength, byte[] b, int max) {
+            int length = Math.min(Math.min(aLength, b.length), max);
+            int i = 0;
+            while (i < length && a[i] == b[i]) {
+                i++;
+            }
+            return i;
+        }
+
+        private static void writeVarInt(ByteArrayOutputStream out, int val) {
+            while ((val & ~0x7f) != 0) {
+                out.write((val & 0x7f) | 0x80);
+                val >>>= 7;
+            }
+            out.write(val);
+        }
+
+        private static void writeInt(ByteArrayOutputStream out, int val) {
+            out.write(val);
+            out.write(val >>> 8);
+            out.write(val >>> 16);
+            out.write(val >>> 24);
+        }
+
+        private static void writeLong(ByteArrayOutputStream out, long val) {
+            writeInt(out, (int) val);
+            writeInt(out, (int) (val >>> 32));
+        }
+
+        private static class Record {
+            private int parentId;
+            private final byte[] name;
+            private final byte isDirectory;
+
+            private Record(int parentId, byte[] name, byte isDirectory) {
+                this.parentId = parentId;
+                this.name = name;
+                this.isDirectory = isDirectory;
+            }
+        }
+    }
+}
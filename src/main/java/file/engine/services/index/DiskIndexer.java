@@ -0,0 +1,221 @@
+package file.engine.services.index;
+
+import file.engine.IsDebug;
+import file.engine.utils.CachedThreadPoolUtil;
+import file.engine.utils.RegexUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 遍历磁盘建立全部文件的索引，用于替代fileSearcherUSN.exe
+ * 所有磁盘共用一个ForkJoinPool，每个文件夹作为一个任务，空闲的线程会窃取其他线程还未遍历的文件夹
+ * 遍历得到的路径分批放入队列，由调用者通过poll取出并写入数据库，队列满时遍历线程会等待写入
+ * 遍历时已经知道每个路径是否为文件夹，和路径一起返回，搜索时不需要再访问磁盘
+ */
+public class DiskIndexer {
+    private static final int BATCH_SIZE = 5000;
+    private static final int MAX_BATCH_NUM = 64;
+
+    private final IgnorePathFilter ignorePathFilter;
+    private final BlockingQueue<Batch> batchQueue = new ArrayBlockingQueue<>(MAX_BATCH_NUM);
+    //每个遍历线程使用自己的缓存，避免每个文件夹都产生一个很小的批次
+    private final ConcurrentHashMap<Thread, Batch> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong indexedNum = new AtomicLong(0);
+    private volatile boolean isCancelled = false;
+    private volatile boolean isFinished = false;
+
+    /**
+     * @param ignorePath 需要忽略的文件夹，使用逗号分隔
+     */
+    public DiskIndexer(String ignorePath) {
+        ignorePathFilter = new IgnorePathFilter(ignorePath);
+    }
+
+    /**
+     * 开始遍历所有磁盘，方法立即返回
+     *
+     * @param disks 磁盘，使用逗号分隔，如 C:\,D:\
+     */
+    public void start(String disks) {
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (String each : RegexUtil.comma.split(disks)) {
+            if (each.isBlank() || !new File(each).exists()) {
+                continue;
+            }
+            tasks.add(pool.submit(new DirectoryTask(Path.of(each))));
+        }
+        CachedThreadPoolUtil.getInstance().executeIoTask(() -> {
+            for (ForkJoinTask<?> task : tasks) {
+                try {
+                    task.join();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            pool.shutdown();
+            buffers.values().forEach(this::putBatch);
+            buffers.clear();
+            isFinished = true;
+        });
+    }
+
+    /**
+     * 取出一批路径
+     *
+     * @param timeout 超时时间
+     * @param unit    单位
+     * @return 路径，超时返回null
+     * @throws InterruptedException 等待时被中断
+     */
+    public Batch poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return batchQueue.poll(timeout, unit);
+    }
+
+    /**
+     * 所有磁盘遍历完成，且所有路径都已经被取出
+     *
+     * @return true如果已经完成
+     */
+    public boolean isDone() {
+        return isFinished && batchQueue.isEmpty();
+    }
+
+    public void cancel() {
+        isCancelled = true;
+        batchQueue.clear();
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * 获取已经遍历到的文件和文件夹数量
+     *
+     * @return 数量
+     */
+    public long getIndexedNum() {
+        return indexedNum.get();
+    }
+
+    private void addToBuffer(Batch paths) {
+        Batch buffer = buffers.computeIfAbsent(Thread.currentThread(), k -> new Batch(BATCH_SIZE));
+        buffer.addAll(paths);
+        if (buffer.size() >= BATCH_SIZE) {
+            buffers.put(Thread.currentThread(), new Batch(BATCH_SIZE));
+            putBatch(buffer);
+        }
+    }
+
+    private void putBatch(Batch batch) {
+        if (batch.size() == 0) {
+            return;
+        }
+        try {
+            while (!isCancelled) {
+                if (batchQueue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * 一批路径，以及每个路径是否为文件夹
+     */
+    public static class Batch {
+        private final ArrayList<String> paths;
+        private final BitSet directories = new BitSet();
+
+        private Batch(int capacity) {
+            paths = new ArrayList<>(capacity);
+        }
+
+        private void add(String path, boolean isDirectory) {
+            if (isDirectory) {
+                directories.set(paths.size());
+            }
+            paths.add(path);
+        }
+
+        private void addAll(Batch other) {
+            int offset = paths.size();
+            for (int i = other.directories.nextSetBit(0); i >= 0; i = other.directories.nextSetBit(i + 1)) {
+                directories.set(offset + i);
+            }
+            paths.addAll(other.paths);
+        }
+
+        public int size() {
+            return paths.size();
+        }
+
+        public String getPath(int index) {
+            return paths.get(index);
+        }
+
+        public boolean isDirectory(int index) {
+            return directories.get(index);
+        }
+    }
+
+    /**
+     * 遍历一个文件夹，子文件夹作为新的任务
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private final Path dir;
+
+        private DirectoryTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (isCancelled) {
+                return;
+            }
+            Batch paths = new Batch(16);
+            ArrayList<DirectoryTask> subTasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path each : stream) {
+                    String path = each.toString();
+                    if (ignorePathFilter.isIgnored(path)) {
+                        continue;
+                    }
+                    boolean isDirectory = isDirectory(each);
+                    paths.add(path, isDirectory);
+                    if (isDirectory) {
+                        subTasks.add(new DirectoryTask(each));
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                //没有权限访问的文件夹
+                if (IsDebug.isDebug()) {
+                    System.err.println("无法遍历文件夹" + dir + "  " + e.getMessage());
+                }
+            }
+            indexedNum.addAndGet(paths.size());
+            addToBuffer(paths);
+            invokeAll(subTasks);
+        }
+
+        private boolean isDirectory(Path path) {
+            try {
+                //Windows下遍历时已经读取了文件属性，不会再次访问磁盘
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                return attributes.isDirectory() && !attributes.isSymbolicLink();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
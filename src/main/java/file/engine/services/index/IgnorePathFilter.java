@@ -0,0 +1,50 @@
+package file.engine.services.index;
+
+import file.engine.utils.RegexUtil;
+
+import java.util.ArrayList;
+
+/**
+ * 判断路径是否需要忽略，磁盘遍历和文件监控使用相同的规则
+ * 与fileSearcherUSN.exe的规则相同，包含$的路径（如$Recycle.Bin）以及包含忽略文件夹的路径不添加
+ */
+public class IgnorePathFilter {
+    private final String ignorePath;
+    private final String[] ignorePaths;
+
+    /**
+     * @param ignorePath 需要忽略的文件夹，使用逗号分隔
+     */
+    public IgnorePathFilter(String ignorePath) {
+        this.ignorePath = ignorePath;
+        ArrayList<String> ignoreList = new ArrayList<>();
+        for (String each : RegexUtil.comma.split(ignorePath.toLowerCase())) {
+            if (!each.isBlank()) {
+                ignoreList.add(each.trim());
+            }
+        }
+        ignorePaths = ignoreList.toArray(new String[0]);
+    }
+
+    /**
+     * 获取创建时使用的忽略文件夹设置，用于判断设置是否已经改变
+     *
+     * @return 忽略文件夹，使用逗号分隔
+     */
+    public String getIgnorePath() {
+        return ignorePath;
+    }
+
+    public boolean isIgnored(String path) {
+        if (path.indexOf('$') != -1) {
+            return true;
+        }
+        String lowerPath = path.toLowerCase();
+        for (String each : ignorePaths) {
+            if (lowerPath.contains(each)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
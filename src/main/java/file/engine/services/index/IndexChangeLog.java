@@ -0,0 +1,113 @@
+package file.engine.services.index;
+
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * 最近的索引修改记录，用于判断之前的搜索结果是否还有效
+ * 每次修改版本加一，只保存最近CAPACITY条修改，更早的修改或者无法逐条描述的修改（重建索引、修改优先级）会使之前的所有结果失效
+ */
+public class IndexChangeLog {
+    private static final int CAPACITY = 4096;
+
+    public enum ChangeType {
+        FILE_ADDED(true),
+        FILE_REMOVED(false),
+        CACHE_ADDED(true),
+        CACHE_REMOVED(false),
+        //文件的排序得分变化，对搜索结果的影响与添加相同
+        RANK_CHANGED(true);
+
+        private final boolean isAddition;
+
+        ChangeType(boolean isAddition) {
+            this.isAddition = isAddition;
+        }
+
+        /**
+         * @return true如果修改可能使新的文件出现在搜索结果中
+         */
+        public boolean isAddition() {
+            return isAddition;
+        }
+    }
+
+    private final String[] paths = new String[CAPACITY];
+    private final ChangeType[] types = new ChangeType[CAPACITY];
+    private long version = 0;
+    private long invalidatedVersion = 0;
+
+    public synchronized void add(ChangeType type, String path) {
+        version++;
+        int index = (int) (version % CAPACITY);
+        paths[index] = path;
+        types[index] = type;
+    }
+
+    /**
+     * 使之前的所有结果失效
+     */
+    public synchronized void invalidateAll() {
+        version++;
+        int index = (int) (version % CAPACITY);
+        paths[index] = null;
+        types[index] = null;
+        invalidatedVersion = version;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * 检查从sinceVersion之后的修改是否都不影响结果
+     *
+     * @param sinceVersion 结果对应的版本
+     * @param isAffected   判断一条修改是否影响结果
+     * @return true如果结果仍然有效
+     */
+    public boolean isUnaffectedSince(long sinceVersion, BiPredicate<ChangeType, String> isAffected) {
+        synchronized (this) {
+            if (sinceVersion < invalidatedVersion) {
+                return false;
+            }
+        }
+        boolean[] isUnaffected = {true};
+        return forEachSince(sinceVersion, (type, path) -> {
+            if (isUnaffected[0] && isAffected.test(type, path)) {
+                isUnaffected[0] = false;
+            }
+        }) && isUnaffected[0];
+    }
+
+    /**
+     * 按顺序遍历sinceVersion之后的每一条修改，不包含invalidateAll()
+     *
+     * @param sinceVersion 起始版本
+     * @param consumer     修改
+     * @return false如果修改记录已经被覆盖，无法遍历
+     */
+    public boolean forEachSince(long sinceVersion, BiConsumer<ChangeType, String> consumer) {
+        ArrayList<ChangeType> changedTypes = new ArrayList<>();
+        ArrayList<String> changedPaths = new ArrayList<>();
+        synchronized (this) {
+            if (version - sinceVersion > CAPACITY) {
+                return false;
+            }
+            for (long i = sinceVersion + 1; i <= version; i++) {
+                int index = (int) (i % CAPACITY);
+                //invalidateAll()占用的版本没有记录
+                if (paths[index] != null && types[index] != null) {
+                    changedTypes.add(types[index]);
+                    changedPaths.add(paths[index]);
+                }
+            }
+        }
+        //在锁外处理，不阻塞写入
+        for (int i = 0; i < changedPaths.size(); i++) {
+            consumer.accept(changedTypes.get(i), changedPaths.get(i));
+        }
+        return true;
+    }
+}
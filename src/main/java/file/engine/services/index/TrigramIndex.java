@@ -0,0 +1,355 @@
+package file.engine.services.index;
+
+import file.engine.utils.PinyinUtil;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 文件名的三元组（trigram）倒排索引，常驻内存
+ * 每个文件名按小写拆分为连续的三个字符，每个三元组对应一个包含该三元组的路径id列表
+ * 查询时只需要对关键字的三元组取交集，即可得到候选路径，不再需要扫描整张表
+ * <p>
+ * 包含中文的文件名同时索引拼音的三元组（全拼和首字母），通过拼音搜索时同样可以直接得到候选路径
+ */
+public class TrigramIndex {
+    private static final int GRAM_LENGTH = 3;
+    //被删除的路径超过总数的该比例后压缩，删除的路径较少时不压缩
+    private static final double COMPACT_RATIO = 0.25;
+    private static final int COMPACT_MIN_REMOVED_NUM = 10000;
+
+    private final ArrayList<String> paths = new ArrayList<>();
+    private final IntList priorities = new IntList();
+    //1为文件夹，0为文件，-1为未知，与数据库中的ISDIR相同
+    private final IntList isDirectories = new IntList();
+    private final HashMap<String, Integer> pathToId = new HashMap<>();
+    private final HashMap<Long, IntList> postings = new HashMap<>();
+    //只保存包含中文的文件名的拼音
+    private final HashMap<Integer, String> pinyins = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int removedNum = 0;
+
+    /**
+     * 添加路径，路径已存在时仅更新优先级和类型
+     *
+     * @param path        文件路径
+     * @param priority    优先级
+     * @param pinyin      数据库中保存的拼音，为null时重新转换
+     * @param isDirectory 1为文件夹，0为文件，-1为未知
+     */
+    public void add(String path, int priority, String pinyin, int isDirectory) {
+        lock.writeLock().lock();
+        try {
+            Integer id = pathToId.get(path);
+            if (id != null) {
+                if (paths.get(id) == null) {
+                    //之前被删除的路径，三元组仍然保留在倒排表中，直接恢复
+                    paths.set(id, path);
+                    removedNum--;
+                }
+                priorities.set(id, priority);
+                isDirectories.set(id, isDirectory);
+                return;
+            }
+            int newId = paths.size();
+            paths.add(path);
+            priorities.add(priority);
+            isDirectories.add(isDirectory);
+            pathToId.put(path, newId);
+            String name = getFileName(path);
+            if (pinyin == null) {
+                pinyin = PinyinUtil.toSearchablePinyin(name);
+            }
+            addGrams(name, newId);
+            if (!pinyin.isEmpty()) {
+                pinyins.put(newId, pinyin);
+                addGrams(pinyin, newId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除路径，只做标记，倒排表中的id在查询时跳过
+     * 被删除的路径过多时压缩索引
+     *
+     * @param path 文件路径
+     */
+    public void remove(String path) {
+        lock.writeLock().lock();
+        try {
+            Integer id = pathToId.get(path);
+            if (id != null && paths.get(id) != null) {
+                paths.set(id, null);
+                removedNum++;
+                if (removedNum >= COMPACT_MIN_REMOVED_NUM && removedNum > paths.size() * COMPACT_RATIO) {
+                    compact();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 去掉所有被删除的路径，剩余的路径按原来的顺序重新分配id
+     * id的顺序不变，倒排表只需要逐个替换id，仍然保持有序，不需要重新拆分文件名
+     */
+    private void compact() {
+        final int oldSize = paths.size();
+        int[] newIds = new int[oldSize];
+        int newSize = 0;
+        IntList newPriorities = new IntList();
+        IntList newIsDirectories = new IntList();
+        HashMap<Integer, String> newPinyins = new HashMap<>();
+        for (int id = 0; id < oldSize; id++) {
+            String path = paths.get(id);
+            if (path == null) {
+                newIds[id] = -1;
+                continue;
+            }
+            newIds[id] = newSize;
+            paths.set(newSize, path);
+            newPriorities.add(priorities.data[id]);
+            newIsDirectories.add(isDirectories.data[id]);
+            String pinyin = pinyins.get(id);
+            if (pinyin != null) {
+                newPinyins.put(newSize, pinyin);
+            }
+            newSize++;
+        }
+        pathToId.entrySet().removeIf(entry -> newIds[entry.getValue()] == -1);
+        pathToId.replaceAll((path, id) -> newIds[id]);
+        paths.subList(newSize, oldSize).clear();
+        paths.trimToSize();
+        priorities.data = newPriorities.data;
+        priorities.size = newPriorities.size;
+        isDirectories.data = newIsDirectories.data;
+        isDirectories.size = newIsDirectories.size;
+        pinyins.clear();
+        pinyins.putAll(newPinyins);
+        postings.values().removeIf(ids -> {
+            int size = 0;
+            for (int i = 0; i < ids.size; i++) {
+                int newId = newIds[ids.data[i]];
+                if (newId != -1) {
+                    ids.data[size++] = newId;
+                }
+            }
+            ids.size = size;
+            return size == 0;
+        });
+        removedNum = 0;
+    }
+
+    /**
+     * 获取索引中记录的路径类型
+     *
+     * @param path 文件路径
+     * @return 1为文件夹，0为文件，-1为未知，路径不在索引中时返回null
+     */
+    public Integer getIsDirectory(String path) {
+        lock.readLock().lock();
+        try {
+            Integer id = pathToId.get(path);
+            if (id == null || paths.get(id) == null) {
+                return null;
+            }
+            return isDirectories.data[id];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            paths.clear();
+            priorities.clear();
+            isDirectories.clear();
+            pathToId.clear();
+            postings.clear();
+            pinyins.clear();
+            removedNum = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取当前有效的路径数量
+     *
+     * @return size
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return paths.size() - removedNum;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 根据关键字查找候选路径，并按照优先级分组
+     * 候选路径只保证包含所有关键字的三元组，仍然需要调用者进行完整的匹配
+     *
+     * @param keywords 文件名关键字，不包含路径关键字
+     * @return key为优先级，value为该优先级下的候选路径，返回null则表示没有可用的关键字，需要扫描全表
+     */
+    public Map<Integer, List<Candidate>> getCandidates(Collection<String> keywords) {
+        lock.readLock().lock();
+        try {
+            IntList matched = null;
+            for (String each : keywords) {
+                if (each == null || each.length() < GRAM_LENGTH) {
+                    continue;
+                }
+                IntList ids = intersectGrams(each);
+                matched = matched == null ? ids : intersect(matched, ids);
+            }
+            if (matched == null) {
+                return null;
+            }
+            HashMap<Integer, List<Candidate>> ret = new HashMap<>();
+            for (int i = 0; i < matched.size; i++) {
+                int id = matched.data[i];
+                String path = paths.get(id);
+                if (path != null) {
+                    ret.computeIfAbsent(priorities.data[id], k -> new ArrayList<>())
+                            .add(new Candidate(path, pinyins.getOrDefault(id, ""), isDirectories.data[id]));
+                }
+            }
+            return ret;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private IntList intersectGrams(String keyword) {
+        String lowerKeyword = toLowerCase(keyword);
+        ArrayList<IntList> lists = new ArrayList<>();
+        final int length = lowerKeyword.length();
+        for (int i = 0; i + GRAM_LENGTH <= length; i++) {
+            IntList ids = postings.get(gramOf(lowerKeyword, i));
+            if (ids == null) {
+                return new IntList();
+            }
+            lists.add(ids);
+        }
+        //从最短的列表开始求交集
+        lists.sort(Comparator.comparingInt(o -> o.size));
+        IntList ret = lists.get(0);
+        for (int i = 1; i < lists.size() && ret.size > 0; i++) {
+            ret = intersect(ret, lists.get(i));
+        }
+        return ret;
+    }
+
+    private void addGrams(String name, int id) {
+        String lowerName = toLowerCase(name);
+        final int length = lowerName.length();
+        for (int i = 0; i + GRAM_LENGTH <= length; i++) {
+            IntList ids = postings.computeIfAbsent(gramOf(lowerName, i), k -> new IntList());
+            //同一个文件名中重复的三元组只记录一次
+            if (ids.size == 0 || ids.data[ids.size - 1] != id) {
+                ids.add(id);
+            }
+        }
+    }
+
+    /**
+     * 逐个字符转换为小写，与QueryMatcher相同，不受系统语言影响，长度也不会改变
+     */
+    private static String toLowerCase(String str) {
+        char[] chars = str.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static long gramOf(String str, int start) {
+        return ((long) str.charAt(start) << 32) | ((long) str.charAt(start + 1) << 16) | str.charAt(start + 2);
+    }
+
+    private static IntList intersect(IntList a, IntList b) {
+        IntList ret = new IntList();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            int x = a.data[i];
+            int y = b.data[j];
+            if (x == y) {
+                ret.add(x);
+                i++;
+                j++;
+            } else if (x < y) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return ret;
+    }
+
+    private static String getFileName(String path) {
+        int index = path.lastIndexOf(File.separator);
+        return path.substring(index + 1);
+    }
+
+    /**
+     * 候选路径以及索引中保存的拼音和类型，不包含中文时拼音为空字符串
+     */
+    public static class Candidate {
+        private final String path;
+        private final String pinyin;
+        private final int isDirectory;
+
+        private Candidate(String path, String pinyin, int isDirectory) {
+            this.path = path;
+            this.pinyin = pinyin;
+            this.isDirectory = isDirectory;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getPinyin() {
+            return pinyin;
+        }
+
+        /**
+         * @return 1为文件夹，0为文件，-1为未知
+         */
+        public int getIsDirectory() {
+            return isDirectory;
+        }
+    }
+
+    /**
+     * 有序的int列表，id按添加顺序递增，可以直接用于归并求交集
+     */
+    private static class IntList {
+        private int[] data = new int[4];
+        private int size = 0;
+
+        private void add(int val) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size << 1);
+            }
+            data[size++] = val;
+        }
+
+        private void set(int index, int val) {
+            data[index] = val;
+        }
+
+        private void clear() {
+            data = new int[4];
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package file.engine.services.index.partition;
+
+import file.engine.constant.Constants;
+import file.engine.dllInterface.GetAscII;
+
+/**
+ * 原来的分区方式，按照文件名的ASCII码之和每100分一张表，超过的全部放在最后一张表
+ * 旧版本生成的数据库使用该方式
+ */
+public class AsciiSumPartitioner implements Partitioner {
+    public static final String NAME = "ascii";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getKey(String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            return 0;
+        }
+        return GetAscII.INSTANCE.getAscII(fileName);
+    }
+
+    @Override
+    public int getPartition(int key) {
+        return Math.min(key / 100, Constants.ALL_TABLE_NUM);
+    }
+}
@@ -0,0 +1,36 @@
+package file.engine.services.index.partition;
+
+/**
+ * 按照文件名第一个字符分区
+ * 字母和数字各占一张表，其余字符（包括中文）按照字符值分散到剩下的表中
+ */
+public class FirstCharPartitioner implements Partitioner {
+    public static final String NAME = "firstChar";
+    private static final int LETTER_NUM = 26;
+    private static final int DIGIT_TABLE = LETTER_NUM;
+    private static final int OTHER_START = LETTER_NUM + 1;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getKey(String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            return 0;
+        }
+        return Character.toLowerCase(fileName.charAt(0));
+    }
+
+    @Override
+    public int getPartition(int key) {
+        if (key >= 'a' && key <= 'z') {
+            return key - 'a';
+        }
+        if (key >= '0' && key <= '9') {
+            return DIGIT_TABLE;
+        }
+        return OTHER_START + Math.floorMod(key, Partitioner.getTableNum() - OTHER_START);
+    }
+}
@@ -0,0 +1,31 @@
+package file.engine.services.index.partition;
+
+import java.util.Locale;
+
+/**
+ * 按照小写文件名的hash值取模分区，各个表的数量基本相同
+ */
+public class HashPartitioner implements Partitioner {
+    public static final String NAME = "hash";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getKey(String fileName) {
+        if (fileName == null) {
+            return 0;
+        }
+        //分区保存在数据库中，不能随系统语言变化
+        int hash = fileName.toLowerCase(Locale.ROOT).hashCode();
+        //打散低位，避免相似文件名集中在少数几张表
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public int getPartition(int key) {
+        return Math.floorMod(key, Partitioner.getTableNum());
+    }
+}
@@ -0,0 +1,60 @@
+package file.engine.services.index.partition;
+
+import file.engine.constant.Constants;
+
+/**
+ * 决定文件路径保存在list0-list40中的哪一张表
+ * 每个实现先通过文件名计算出分区键，保存在表的ASCII列中，再由分区键得到表的序号
+ */
+public interface Partitioner {
+
+    /**
+     * 分区方式名称，保存在数据库中，用于检测数据库是否需要迁移
+     *
+     * @return 名称
+     */
+    String getName();
+
+    /**
+     * 计算文件名的分区键
+     *
+     * @param fileName 文件名
+     * @return 分区键
+     */
+    int getKey(String fileName);
+
+    /**
+     * 通过分区键获取表的序号
+     *
+     * @param key 分区键
+     * @return 0 - Constants.ALL_TABLE_NUM
+     */
+    int getPartition(int key);
+
+    default int getPartition(String fileName) {
+        return getPartition(getKey(fileName));
+    }
+
+    /**
+     * 通过名称获取分区方式，名称不存在时使用哈希分区，原来的ASCII分区需要Windows下的dll
+     *
+     * @param name 名称
+     * @return Partitioner
+     */
+    static Partitioner getByName(String name) {
+        if (HashPartitioner.NAME.equals(name)) {
+            return new HashPartitioner();
+        }
+        if (FirstCharPartitioner.NAME.equals(name)) {
+            return new FirstCharPartitioner();
+        }
+        if (AsciiSumPartitioner.NAME.equals(name)) {
+            return new AsciiSumPartitioner();
+        }
+        return new HashPartitioner();
+    }
+
+    static int getTableNum() {
+        return Constants.ALL_TABLE_NUM + 1;
+    }
+}
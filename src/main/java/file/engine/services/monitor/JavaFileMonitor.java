@@ -0,0 +1,368 @@
+package file.engine.services.monitor;
+
+import file.engine.IsDebug;
+import file.engine.configs.AllConfigs;
+import file.engine.dllInterface.FileMonitor;
+import file.engine.event.handler.EventManagement;
+import file.engine.event.handler.impl.database.AddToDatabaseEvent;
+import file.engine.event.handler.impl.database.DeleteFolderFromDatabaseEvent;
+import file.engine.event.handler.impl.database.DeleteFromDatabaseEvent;
+import file.engine.event.handler.impl.database.UpdateDatabaseEvent;
+import file.engine.services.DatabaseService;
+import file.engine.services.index.IgnorePathFilter;
+import file.engine.utils.CachedThreadPoolUtil;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 使用WatchService实现的文件监控，不依赖fileMonitor.dll，可以在没有管理员权限或者非Windows系统下使用
+ * Windows下使用FILE_TREE一次监控整个磁盘，其他系统需要为每个文件夹单独注册
+ * 文件变化先在内存中合并，每隔一段时间直接发送给DatabaseService，不再写入tmp中的文本文件
+ * 忽略规则与DiskIndexer相同，被删除的文件夹会同时删除数据库中该文件夹下的所有记录
+ * 事件过多被系统丢弃时无法知道哪些文件被添加或删除，数据库空闲后重建索引，重建时新的表只包含仍然存在的文件
+ */
+public class JavaFileMonitor implements FileMonitor {
+    private static final long FLUSH_INTERVAL = 500;
+    private static final WatchEvent.Kind<?>[] WATCH_KINDS =
+            {StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE};
+    private static final WatchEvent.Modifier fileTreeModifier = getFileTreeModifier();
+
+    private final Object lock = new Object();
+    //同一个路径只会存在于其中一个集合，保留最后一次变化
+    private LinkedHashSet<String> addSet = new LinkedHashSet<>();
+    private LinkedHashSet<String> removeSet = new LinkedHashSet<>();
+    private WatchService watchService;
+    private volatile boolean isRunning = false;
+    private volatile boolean isRegisterLimitReached = false;
+    //停止后马上重新开始时旧的循环可能还未退出，保证只有一个循环在运行
+    private final AtomicBoolean isFlushLoopRunning = new AtomicBoolean(false);
+    //有事件被丢弃，需要重建索引
+    private final AtomicBoolean isResyncNeeded = new AtomicBoolean(false);
+    private volatile IgnorePathFilter ignorePathFilter = null;
+
+    private static volatile JavaFileMonitor INSTANCE = null;
+
+    private JavaFileMonitor() {
+    }
+
+    public static JavaFileMonitor getInstance() {
+        if (INSTANCE == null) {
+            synchronized (JavaFileMonitor.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new JavaFileMonitor();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 开始监控文件夹，在后台注册，方法立即返回
+     *
+     * @param path 文件夹路径
+     */
+    @Override
+    public void monitor(String path) {
+        try {
+            startIfNotRunning();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        CachedThreadPoolUtil.getInstance().executeIoTask(() -> {
+            if (IsDebug.isDebug()) {
+                System.out.println("Monitoring " + path);
+            }
+            register(Path.of(path));
+        });
+    }
+
+    @Override
+    public void stop_monitor() {
+        synchronized (lock) {
+            isRunning = false;
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                watchService = null;
+            }
+        }
+    }
+
+    /**
+     * 变化直接发送给DatabaseService，不需要输出文件夹
+     *
+     * @param path 输出文件夹
+     */
+    @Override
+    public void set_output(String path) {
+    }
+
+    private void startIfNotRunning() throws IOException {
+        synchronized (lock) {
+            if (isRunning) {
+                return;
+            }
+            watchService = FileSystems.getDefault().newWatchService();
+            isRunning = true;
+            WatchService service = watchService;
+            CachedThreadPoolUtil cachedThreadPoolUtil = CachedThreadPoolUtil.getInstance();
+            cachedThreadPoolUtil.executeTask(() -> pollEvents(service));
+            if (isFlushLoopRunning.compareAndSet(false, true)) {
+                cachedThreadPoolUtil.executeTask(this::flushChangesLoop);
+            }
+        }
+    }
+
+    /**
+     * 获取忽略规则，设置中的忽略文件夹改变后重新创建
+     *
+     * @return IgnorePathFilter
+     */
+    private IgnorePathFilter getIgnorePathFilter() {
+        String ignorePath = AllConfigs.getInstance().getIgnorePath();
+        IgnorePathFilter filter = ignorePathFilter;
+        if (filter == null || !filter.getIgnorePath().equals(ignorePath)) {
+            filter = new IgnorePathFilter(ignorePath);
+            ignorePathFilter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * 注册文件夹，不支持FILE_TREE时递归注册所有子文件夹
+     *
+     * @param dir 文件夹
+     */
+    private void register(Path dir) {
+        WatchService service = watchService;
+        if (service == null) {
+            return;
+        }
+        try {
+            if (fileTreeModifier != null) {
+                dir.register(service, WATCH_KINDS, fileTreeModifier);
+                return;
+            }
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path each, BasicFileAttributes attrs) {
+                    if (isRegisterLimitReached || !isRunning) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (!each.equals(dir) && getIgnorePathFilter().isIgnored(each.toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    try {
+                        each.register(service, WATCH_KINDS);
+                    } catch (IOException e) {
+                        //inotify数量达到系统上限
+                        isRegisterLimitReached = true;
+                        System.err.println("文件监控数量达到系统上限，部分文件夹将不会被监控  " + e.getMessage());
+                        return FileVisitResult.TERMINATE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | ClosedWatchServiceException e) {
+            if (IsDebug.isDebug()) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void pollEvents(WatchService service) {
+        try {
+            while (isRunning) {
+                WatchKey key = service.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        //事件过多被丢弃，FILE_TREE下dir为整个磁盘，不在这里遍历，由flushChanges()发送重建索引的请求
+                        if (isResyncNeeded.compareAndSet(false, true) && IsDebug.isDebug()) {
+                            System.err.println("文件监控事件溢出，等待重建索引  " + dir);
+                        }
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    if (path.getFileName().toString().endsWith("~")) {
+                        //编辑器保存时产生的临时文件
+                        continue;
+                    }
+                    String pathStr = path.toString();
+                    if (getIgnorePathFilter().isIgnored(pathStr)) {
+                        continue;
+                    }
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        addChange(pathStr, true);
+                        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                            //注册前文件夹中可能已经有文件
+                            CachedThreadPoolUtil.getInstance().executeIoTask(() -> {
+                                if (fileTreeModifier == null) {
+                                    register(path);
+                                }
+                                rescan(path);
+                            });
+                        }
+                    } else {
+                        addChange(pathStr, false);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    /**
+     * 将新建的文件夹中的所有文件添加到数据库，已存在的记录会被忽略
+     *
+     * @param dir 文件夹
+     */
+    private void rescan(Path dir) {
+        IgnorePathFilter filter = getIgnorePathFilter();
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path each, BasicFileAttributes attrs) {
+                    if (!isRunning) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (!each.equals(dir)) {
+                        String path = each.toString();
+                        if (filter.isIgnored(path)) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        addChange(path, true);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String path = file.toString();
+                    if (!filter.isIgnored(path)) {
+                        addChange(path, true);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            if (IsDebug.isDebug()) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void addChange(String path, boolean isAdd) {
+        synchronized (lock) {
+            if (isAdd) {
+                removeSet.remove(path);
+                addSet.add(path);
+            } else {
+                addSet.remove(path);
+                removeSet.add(path);
+            }
+        }
+    }
+
+    /**
+     * 定时将合并后的变化发送给DatabaseService，数据库繁忙时保留在内存中
+     * 循环退出后如果监控已经重新开始，由当前线程继续运行，不会再启动新的循环
+     */
+    private void flushChangesLoop() {
+        do {
+            try {
+                flushChanges();
+            } finally {
+                isFlushLoopRunning.set(false);
+            }
+        } while (isRunning && isFlushLoopRunning.compareAndSet(false, true));
+    }
+
+    private void flushChanges() {
+        EventManagement eventManagement = EventManagement.getInstance();
+        DatabaseService databaseService = DatabaseService.getInstance();
+        try {
+            while (isRunning && eventManagement.isNotMainExit()) {
+                TimeUnit.MILLISECONDS.sleep(FLUSH_INTERVAL);
+                if (databaseService.isBusy()) {
+                    continue;
+                }
+                if (isResyncNeeded.compareAndSet(true, false)) {
+                    //重建期间的修改会在替换新表时重新执行，内存中的修改照常发送
+                    eventManagement.putEvent(new UpdateDatabaseEvent());
+                }
+                LinkedHashSet<String> adds;
+                LinkedHashSet<String> removes;
+                synchronized (lock) {
+                    if (addSet.isEmpty() && removeSet.isEmpty()) {
+                        continue;
+                    }
+                    adds = addSet;
+                    removes = removeSet;
+                    addSet = new LinkedHashSet<>();
+                    removeSet = new LinkedHashSet<>();
+                }
+                if (!removes.isEmpty()) {
+                    //被删除的文件夹需要同时删除其中的所有记录
+                    LinkedHashSet<String> removedFiles = new LinkedHashSet<>();
+                    LinkedHashSet<String> removedFolders = new LinkedHashSet<>();
+                    for (String each : removes) {
+                        if (databaseService.isIndexedAsDirectory(each)) {
+                            removedFolders.add(each);
+                        } else {
+                            removedFiles.add(each);
+                        }
+                    }
+                    if (!removedFiles.isEmpty()) {
+                        eventManagement.putEvent(new DeleteFromDatabaseEvent(removedFiles));
+                    }
+                    if (!removedFolders.isEmpty()) {
+                        eventManagement.putEvent(new DeleteFolderFromDatabaseEvent(removedFolders));
+                    }
+                }
+                if (!adds.isEmpty()) {
+                    eventManagement.putEvent(new AddToDatabaseEvent(adds));
+                }
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Windows下的JDK支持使用FILE_TREE监控整个文件夹树，该类不是标准API，通过反射获取
+     *
+     * @return FILE_TREE，不支持时返回null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static WatchEvent.Modifier getFileTreeModifier() {
+        if (!System.getProperty("os.name").toLowerCase().contains("windows")) {
+            return null;
+        }
+        try {
+            Class clazz = Class.forName("com.sun.nio.file.ExtendedWatchEventModifier");
+            return (WatchEvent.Modifier) Enum.valueOf(clazz, "FILE_TREE");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -294,7 +294,7 @@ public class PluginService {
                 startCheckTime.set(0xFFFL);
             }
         });
-        CachedThreadPoolUtil.getInstance().executeTask(checkUpdateThread);
+        CachedThreadPoolUtil.getInstance().executeIoTask(checkUpdateThread);
         //等待获取插件更新信息
         try {
             while (startCheckTime.get() != checkSuccess) {
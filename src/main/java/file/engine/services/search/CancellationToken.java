@@ -0,0 +1,57 @@
+package file.engine.services.search;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 一次搜索的取消标记，用户重新输入或关闭窗口时取消，搜索线程检测到后尽快退出
+ * 正在阻塞的操作（如数据库查询，遍历文件夹）可以注册回调，取消时立即执行，不需要等待下一次检查
+ */
+public class CancellationToken {
+    private volatile boolean isCancelled = false;
+    private final ConcurrentLinkedQueue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+
+    public void cancel() {
+        if (isCancelled) {
+            return;
+        }
+        isCancelled = true;
+        Runnable callback;
+        while ((callback = callbacks.poll()) != null) {
+            runCallback(callback);
+        }
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * 注册取消时执行的回调，已经取消则立即执行
+     * 回调在调用cancel()的线程中执行，不能阻塞
+     *
+     * @param callback 回调
+     */
+    public void register(Runnable callback) {
+        callbacks.add(callback);
+        if (isCancelled && callbacks.remove(callback)) {
+            runCallback(callback);
+        }
+    }
+
+    /**
+     * 操作已经完成，不再需要回调
+     *
+     * @param callback 注册时的回调
+     */
+    public void unregister(Runnable callback) {
+        callbacks.remove(callback);
+    }
+
+    private static void runCallback(Runnable callback) {
+        try {
+            callback.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package file.engine.services.search;
+
+import file.engine.IsDebug;
+import file.engine.services.index.IndexChangeLog;
+import file.engine.utils.CachedThreadPoolUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 优先文件夹中所有文件的内存索引，key为文件路径，value为是否为文件夹
+ * 优先文件夹第一次被搜索或者修改后在后台遍历一次，之后根据索引修改记录更新，搜索时与缓存一样直接匹配内存中的路径
+ * 遍历完成前不返回优先文件夹的结果，这些文件仍然可以从数据库中搜索到
+ */
+class PriorityFolderIndex {
+    private final IndexChangeLog changeLog;
+    private volatile ConcurrentHashMap<String, Boolean> paths = new ConcurrentHashMap<>();
+    private String root = null;
+    private boolean isReady = false;
+    //paths已经包含的修改记录版本
+    private long version = 0;
+    //每次重新遍历加一，只保留最后一次遍历的结果
+    private int buildId = 0;
+
+    PriorityFolderIndex(IndexChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * 检查优先文件夹是否变化，并将之后的文件修改应用到索引中
+     *
+     * @param folder 当前设置的优先文件夹
+     * @return true如果索引可以使用
+     */
+    synchronized boolean prepare(String folder) {
+        if (folder == null || folder.isEmpty() || !new File(folder).isDirectory()) {
+            root = null;
+            isReady = false;
+            paths = new ConcurrentHashMap<>();
+            return false;
+        }
+        if (!folder.equals(root)) {
+            root = folder;
+            startBuild();
+            return false;
+        }
+        if (!isReady) {
+            return false;
+        }
+        long currentVersion = changeLog.getVersion();
+        String prefix = root.endsWith(File.separator) ? root : root + File.separator;
+        ConcurrentHashMap<String, Boolean> current = paths;
+        boolean isContinuous = changeLog.forEachSince(version, (type, path) -> {
+            if (!path.startsWith(prefix)) {
+                return;
+            }
+            if (type == IndexChangeLog.ChangeType.FILE_ADDED) {
+                current.put(path, new File(path).isDirectory());
+            } else if (type == IndexChangeLog.ChangeType.FILE_REMOVED) {
+                current.remove(path);
+            }
+        });
+        if (!isContinuous) {
+            //修改太多，记录已经被覆盖
+            startBuild();
+            return false;
+        }
+        version = currentVersion;
+        return true;
+    }
+
+    /**
+     * @return true如果设置了优先文件夹，但是索引还没有建立完成
+     */
+    synchronized boolean isBuilding() {
+        return root != null && !isReady;
+    }
+
+    /**
+     * 遍历索引中的所有文件，遍历时索引仍然可能被修改
+     *
+     * @param consumer 文件路径和是否为文件夹
+     */
+    void forEach(BiConsumer<String, Boolean> consumer) {
+        paths.forEach(consumer);
+    }
+
+    boolean contains(String path) {
+        return paths.containsKey(path);
+    }
+
+    /**
+     * 删除已经不存在的文件，不需要等待索引修改记录
+     *
+     * @param path 文件路径
+     */
+    void remove(String path) {
+        paths.remove(path);
+    }
+
+    private void startBuild() {
+        isReady = false;
+        int id = ++buildId;
+        String folder = root;
+        long startVersion = changeLog.getVersion();
+        CachedThreadPoolUtil.getInstance().executeIoTask(() -> {
+            long start = System.currentTimeMillis();
+            ConcurrentHashMap<String, Boolean> newPaths = walk(folder);
+            synchronized (this) {
+                if (id != buildId) {
+                    return;
+                }
+                paths = newPaths;
+                //遍历期间的修改在下一次prepare()时重新应用
+                version = startVersion;
+                isReady = true;
+            }
+            if (IsDebug.isDebug()) {
+                System.out.println("优先文件夹索引建立完成，共" + newPaths.size() + "个文件，用时" + (System.currentTimeMillis() - start) + "ms");
+            }
+        });
+    }
+
+    private static ConcurrentHashMap<String, Boolean> walk(String folder) {
+        ConcurrentHashMap<String, Boolean> ret = new ConcurrentHashMap<>();
+        Path rootPath = Path.of(folder);
+        try {
+            Files.walkFileTree(rootPath, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(rootPath)) {
+                        ret.put(dir.toString(), true);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    ret.put(file.toString(), attrs.isDirectory());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,248 @@
+package file.engine.services.search;
+
+import file.engine.utils.PinyinUtil;
+import file.engine.utils.RegexUtil;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+
+/**
+ * 由搜索条件编译得到的匹配器，关键字的大小写转换、路径分隔符替换以及跳转表在创建时完成
+ * 匹配时直接在文件路径上查找（Boyer-Moore-Horspool），不创建新的字符串
+ * 文件名直接匹配失败时使用索引中保存的拼音，没有保存拼音的记录才在查询时转换
+ * 同一个SearchQuery的所有搜索线程共用一个实例，创建后不再修改
+ */
+final class QueryMatcher {
+    //跳转表按字符的低8位索引，冲突时取较小的跳转距离，结果仍然正确
+    private static final int SHIFT_TABLE_SIZE = 256;
+    //匹配得分，见getMatchScore()
+    private static final int SCORE_PINYIN = 0;
+    private static final int SCORE_CONTAINS = 1;
+    private static final int SCORE_PREFIX = 2;
+    private static final int SCORE_STEM = 3;
+    private static final int SCORE_EXACT = 4;
+
+    private final Keyword[] nameKeywords;
+    private final Keyword[] pathKeywords;
+    private final boolean isIgnoreCase;
+    private final boolean isFileOnly;
+    private final boolean isDirectoryOnly;
+    private final String fullName;
+
+    /**
+     * @param searchText 搜索框中的关键字部分，full规则使用
+     * @param keywords   关键字
+     * @param searchCase 已经转为小写并去掉冲突的规则，可以为null
+     */
+    QueryMatcher(String searchText, String[] keywords, String[] searchCase) {
+        boolean isCaseSensitive = false;
+        boolean isFileOnly = false;
+        boolean isDirectoryOnly = false;
+        boolean isFull = false;
+        if (searchCase != null) {
+            for (String each : searchCase) {
+                switch (each) {
+                    case "f":
+                        isFileOnly = true;
+                        break;
+                    case "d":
+                        isDirectoryOnly = true;
+                        break;
+                    case "full":
+                        isFull = true;
+                        break;
+                    case "case":
+                        isCaseSensitive = true;
+                        break;
+                }
+            }
+        }
+        this.isIgnoreCase = !isCaseSensitive;
+        this.isFileOnly = isFileOnly;
+        this.isDirectoryOnly = isDirectoryOnly;
+        this.fullName = isFull ? searchText : null;
+        ArrayList<Keyword> names = new ArrayList<>();
+        ArrayList<Keyword> paths = new ArrayList<>();
+        for (String each : keywords) {
+            if (each == null || each.isEmpty()) {
+                continue;
+            }
+            if (each.startsWith("/") || each.startsWith(File.separator)) {
+                Matcher matcher = RegexUtil.slash.matcher(each);
+                paths.add(new Keyword(matcher.replaceAll(Matcher.quoteReplacement(File.separator)), isIgnoreCase));
+            } else {
+                names.add(new Keyword(each, isIgnoreCase));
+            }
+        }
+        this.nameKeywords = names.toArray(new Keyword[0]);
+        this.pathKeywords = paths.toArray(new Keyword[0]);
+    }
+
+    /**
+     * 检查文件路径是否匹配所有关键字和规则
+     *
+     * @param path        文件路径
+     * @param isDirectory 是否为文件夹，为null时f和d规则需要读取磁盘
+     * @param pinyin      索引中保存的拼音，见PinyinUtil.toSearchablePinyin()，为null时在需要时转换
+     * @return true如果满足所有条件
+     */
+    boolean isMatched(String path, Boolean isDirectory, String pinyin) {
+        final int length = path.length();
+        final int separatorIndex = path.lastIndexOf(File.separatorChar);
+        final int nameStart = separatorIndex + 1;
+        if (fullName != null && !(length - nameStart == fullName.length() &&
+                path.regionMatches(true, nameStart, fullName, 0, fullName.length()))) {
+            return false;
+        }
+        if (pathKeywords.length != 0) {
+            int parentEnd = getParentEnd(path, separatorIndex);
+            for (Keyword each : pathKeywords) {
+                if (!each.isFoundIn(path, 0, parentEnd, isIgnoreCase)) {
+                    return false;
+                }
+            }
+        }
+        for (Keyword each : nameKeywords) {
+            if (each.isFoundIn(path, nameStart, length, isIgnoreCase)) {
+                continue;
+            }
+            if (pinyin == null) {
+                pinyin = PinyinUtil.isContainChinese(path, nameStart) ? PinyinUtil.toSearchablePinyin(path.substring(nameStart)) : "";
+            }
+            if (pinyin.isEmpty() || !each.isFoundIn(pinyin, 0, pinyin.length(), isIgnoreCase)) {
+                return false;
+            }
+        }
+        if (isFileOnly) {
+            return isDirectory == null ? Files.isRegularFile(Path.of(path)) : !isDirectory;
+        }
+        if (isDirectoryOnly) {
+            return isDirectory == null ? Files.isDirectory(Path.of(path)) : isDirectory;
+        }
+        return true;
+    }
+
+    /**
+     * 计算已经匹配的文件路径的得分，用于同一优先级内的排序，只看第一个文件名关键字
+     * 文件名与关键字相同 > 去掉后缀后与关键字相同 > 文件名以关键字开头 > 文件名包含关键字 > 只通过拼音匹配
+     *
+     * @param path 已经匹配的文件路径
+     * @return 得分
+     */
+    int getMatchScore(String path) {
+        if (nameKeywords.length == 0) {
+            return SCORE_CONTAINS;
+        }
+        final int length = path.length();
+        final int nameStart = path.lastIndexOf(File.separatorChar) + 1;
+        Keyword first = nameKeywords[0];
+        if (first.isPrefixOf(path, nameStart, length, isIgnoreCase)) {
+            int end = nameStart + first.pattern.length;
+            if (end == length) {
+                return SCORE_EXACT;
+            }
+            if (path.charAt(end) == '.' && path.indexOf('.', end + 1) == -1) {
+                return SCORE_STEM;
+            }
+            return SCORE_PREFIX;
+        }
+        return first.isFoundIn(path, nameStart, length, isIgnoreCase) ? SCORE_CONTAINS : SCORE_PINYIN;
+    }
+
+    /**
+     * 父路径的结束位置，与File.getParent()相同，根目录下的文件保留根目录末尾的分隔符
+     */
+    private static int getParentEnd(String path, int separatorIndex) {
+        if (separatorIndex == -1) {
+            return 0;
+        }
+        if (path.lastIndexOf(File.separatorChar, separatorIndex - 1) == -1) {
+            return separatorIndex + 1;
+        }
+        return separatorIndex;
+    }
+
+    private static char toLowerCase(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static final class Keyword {
+        private final char[] pattern;
+        private final int[] shift = new int[SHIFT_TABLE_SIZE];
+
+        private Keyword(String keyword, boolean isIgnoreCase) {
+            pattern = keyword.toCharArray();
+            final int length = pattern.length;
+            if (isIgnoreCase) {
+                for (int i = 0; i < length; i++) {
+                    pattern[i] = toLowerCase(pattern[i]);
+                }
+            }
+            for (int i = 0; i < SHIFT_TABLE_SIZE; i++) {
+                shift[i] = length;
+            }
+            for (int i = 0; i < length - 1; i++) {
+                shift[pattern[i] & 0xFF] = length - 1 - i;
+            }
+        }
+
+        /**
+         * text的[from, to)范围是否以关键字开头
+         */
+        private boolean isPrefixOf(String text, int from, int to, boolean isIgnoreCase) {
+            final int length = pattern.length;
+            if (to - from < length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(from + i);
+                if (isIgnoreCase) {
+                    c = toLowerCase(c);
+                }
+                if (c != pattern[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 在text的[from, to)范围内查找关键字
+         */
+        private boolean isFoundIn(String text, int from, int to, boolean isIgnoreCase) {
+            final int last = pattern.length - 1;
+            final char lastChar = pattern[last];
+            int i = from;
+            while (i + last < to) {
+                char c = text.charAt(i + last);
+                if (isIgnoreCase) {
+                    c = toLowerCase(c);
+                }
+                if (c == lastChar) {
+                    int j = last - 1;
+                    while (j >= 0) {
+                        char each = text.charAt(i + j);
+                        if (isIgnoreCase) {
+                            each = toLowerCase(each);
+                        }
+                        if (each != pattern[j]) {
+                            break;
+                        }
+                        j--;
+                    }
+                    if (j < 0) {
+                        return true;
+                    }
+                }
+                i += shift[c & 0xFF];
+            }
+            return false;
+        }
+    }
+}
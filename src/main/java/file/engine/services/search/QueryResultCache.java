@@ -0,0 +1,105 @@
+package file.engine.services.search;
+
+import file.engine.services.index.IndexChangeLog;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 最近搜索过的结果，超过MAX_ENTRIES后淘汰最久没有使用的
+ * 取出时根据索引修改记录逐条检查，只有添加的文件匹配该搜索，或者删除的文件在结果中时才失效
+ * 结果中包含优先文件夹中的文件，优先文件夹的设置改变后同样失效
+ */
+class QueryResultCache {
+    private static final int MAX_ENTRIES = 64;
+
+    private final IndexChangeLog changeLog;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    QueryResultCache(IndexChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * 获取仍然有效的结果
+     *
+     * @param query          搜索条件
+     * @param limit          需要的结果数量
+     * @param priorityFolder 当前的优先文件夹
+     * @return 没有缓存或者已经失效时返回null
+     */
+    Entry get(SearchQuery query, int limit, String priorityFolder) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(query.getKey());
+        }
+        if (entry == null || (!entry.isComplete && entry.limit < limit)) {
+            return null;
+        }
+        if (!isValid(entry, priorityFolder)) {
+            synchronized (this) {
+                entries.remove(query.getKey(), entry);
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized void put(Entry entry) {
+        entries.put(entry.query.getKey(), entry);
+    }
+
+    /**
+     * 检查结果对应的版本之后的修改是否影响结果，仍然有效时更新版本，下次不再重复检查
+     *
+     * @param entry          结果
+     * @param priorityFolder 当前的优先文件夹
+     * @return true如果仍然有效
+     */
+    boolean isValid(Entry entry, String priorityFolder) {
+        if (!Objects.equals(entry.priorityFolder, priorityFolder)) {
+            return false;
+        }
+        long currentVersion = changeLog.getVersion();
+        boolean isValid = changeLog.isUnaffectedSince(entry.version, (type, path) ->
+                type.isAddition() ? entry.query.isMatched(path) : entry.resultSet.contains(path));
+        if (isValid && entry.version < currentVersion) {
+            entry.version = currentVersion;
+        }
+        return isValid;
+    }
+
+    long getVersion() {
+        return changeLog.getVersion();
+    }
+
+    static class Entry {
+        final SearchQuery query;
+        final List<String> results;
+        final int limit;
+        //搜索时的优先文件夹
+        final String priorityFolder;
+        //结果数量小于limit，即所有匹配的文件都在结果中
+        final boolean isComplete;
+        private final HashSet<String> resultSet;
+        private volatile long version;
+
+        Entry(SearchQuery query, List<String> results, int limit, String priorityFolder, long version) {
+            this.query = query;
+            this.results = results;
+            this.limit = limit;
+            this.priorityFolder = priorityFolder;
+            this.isComplete = results.size() < limit;
+            this.resultSet = new HashSet<>(results);
+            this.version = version;
+        }
+    }
+}
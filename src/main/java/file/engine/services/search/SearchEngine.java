@@ -0,0 +1,774 @@
+package file.engine.services.search;
+
+import file.engine.IsDebug;
+import file.engine.annotation.EventListener;
+import file.engine.configs.AllConfigs;
+import file.engine.configs.Enums;
+import file.engine.constant.Constants;
+import file.engine.event.handler.EventManagement;
+import file.engine.event.handler.impl.database.DeleteFromCacheEvent;
+import file.engine.event.handler.impl.database.DeleteFromDatabaseEvent;
+import file.engine.event.handler.impl.database.UpdateDatabaseEvent;
+import file.engine.services.DatabaseService;
+import file.engine.services.OpenHistoryService;
+import file.engine.services.index.ColumnarPathStore;
+import file.engine.services.index.TrigramIndex;
+import file.engine.utils.CachedThreadPoolUtil;
+import file.engine.utils.RegexUtil;
+import file.engine.utils.SQLiteUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 不依赖界面的搜索服务，SearchBar、插件以及测试工具都可以直接调用
+ * 搜索顺序为 优先文件夹 -> 缓存 -> 数据库（按优先级从高到低），数据库的搜索在后台线程中与前两者同时进行
+ * 优先文件夹、缓存和每个优先级的数据库结果只保留得分最高的limit个，按得分从高到低返回，而不是先找到的先返回
+ * 得分以打开记录的frecency为主，匹配程度为辅，经常打开的文件排在前面
+ * 结果通过consumer逐个返回，同一个路径只会返回一次
+ */
+public class SearchEngine {
+    //下标为表的编号，使用频率越高权重越大，使经常使用的表最快被搜索到，权重随时间衰减并保存到数据库
+    private final AtomicLongArray tableWeights = new AtomicLongArray(Constants.ALL_TABLE_NUM + 1);
+    private final ConcurrentLinkedQueue<Integer> priorityQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isDatabaseUpdated = new AtomicBoolean(false);
+    private final DatabaseService databaseService = DatabaseService.getInstance();
+    private final OpenHistoryService openHistoryService = OpenHistoryService.getInstance();
+    //最近搜索过的结果，重复搜索时直接返回
+    private final QueryResultCache queryResultCache = new QueryResultCache(databaseService.getIndexChangeLog());
+    private final PriorityFolderIndex priorityFolderIndex = new PriorityFolderIndex(databaseService.getIndexChangeLog());
+    //上一次完整的搜索结果，新的输入只是缩小了范围时直接在其中过滤
+    private volatile QueryResultCache.Entry lastSearch = null;
+
+    //三元组索引的候选路径每CANDIDATE_BATCH_SIZE个作为一个任务
+    private static final int CANDIDATE_BATCH_SIZE = 4096;
+    //匹配得分的范围，frecency得分乘以该值后加上匹配得分
+    private static final int MATCH_SCORE_RANGE = 8;
+    //表权重每10分钟衰减为原来的0.99，半衰期约11.5小时
+    private static final long TABLE_WEIGHT_DECAY_PERIOD_MINUTES = 10;
+    private static final double TABLE_WEIGHT_DECAY_FACTOR = 0.99;
+    private static final String TABLE_WEIGHTS_KEY = "tableWeights";
+    private static final String TABLE_WEIGHTS_TIME_KEY = "tableWeightsTime";
+
+    private static volatile SearchEngine INSTANCE = null;
+
+    private SearchEngine() {
+        readTableWeights();
+        initPriorityQueue();
+        CachedThreadPoolUtil.getInstance().scheduleAtFixedRate(this::decayAndSaveTableWeights,
+                TABLE_WEIGHT_DECAY_PERIOD_MINUTES, TABLE_WEIGHT_DECAY_PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public static SearchEngine getInstance() {
+        if (INSTANCE == null) {
+            synchronized (SearchEngine.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SearchEngine();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 搜索文件，方法会阻塞直到搜索完成、结果数量达到limit或者被取消
+     *
+     * @param query    搜索框中的文字，格式与SearchBar相同
+     * @param limit    最多返回的结果数量
+     * @param token    取消标记
+     * @param consumer 每找到一个结果调用一次，在搜索线程中调用
+     * @return 返回的结果数量
+     */
+    public int search(String query, int limit, CancellationToken token, Consumer<String> consumer) {
+        return search(SearchQuery.parse(query), limit, token, consumer, null);
+    }
+
+    /**
+     * 搜索文件，方法会阻塞直到搜索完成、结果数量达到limit或者被取消
+     * 数据库和缓存中的结果不再逐个检查文件是否存在，搜索结束后在后台检查，已经不存在的文件会从数据库和缓存中删除
+     *
+     * @param query         搜索框中的文字，格式与SearchBar相同
+     * @param limit         最多返回的结果数量
+     * @param token         取消标记
+     * @param consumer      每找到一个结果调用一次，在搜索线程中调用
+     * @param staleConsumer 已经返回但文件已不存在的结果，在后台线程中调用，可以为null
+     * @return 返回的结果数量
+     */
+    public int search(String query, int limit, CancellationToken token, Consumer<String> consumer, Consumer<String> staleConsumer) {
+        return search(SearchQuery.parse(query), limit, token, consumer, staleConsumer);
+    }
+
+    /**
+     * 搜索文件，方法会阻塞直到搜索完成、结果数量达到limit或者被取消
+     * 重建索引、迁移分区和整理数据库时同样可以搜索，只读连接读取的是原来的表
+     *
+     * @param query    搜索条件
+     * @param limit    最多返回的结果数量
+     * @param token    取消标记
+     * @param consumer      每找到一个结果调用一次，在搜索线程中调用
+     * @param staleConsumer 已经返回但文件已不存在的结果，在后台线程中调用，可以为null
+     * @return 返回的结果数量
+     */
+    public int search(SearchQuery query, int limit, CancellationToken token, Consumer<String> consumer, Consumer<String> staleConsumer) {
+        ResultCollector collector = new ResultCollector(limit, token, consumer);
+        String priorityFolder = AllConfigs.getInstance().getPriorityFolder();
+        QueryResultCache.Entry cached = queryResultCache.get(query, limit, priorityFolder);
+        if (cached != null) {
+            if (IsDebug.isDebug()) {
+                System.out.println("使用缓存的" + cached.results.size() + "个结果");
+            }
+            collector.acceptAll(cached.results);
+            checkDeliveredExistsInBackground(collector, staleConsumer);
+            return collector.getResultNum();
+        }
+        long indexVersion = queryResultCache.getVersion();
+        QueryResultCache.Entry previous = lastSearch;
+        if (previous != null && query.isNarrowerThan(previous.query) && queryResultCache.isValid(previous, priorityFolder)) {
+            refine(query, previous.results, collector);
+            checkDeliveredExistsInBackground(collector, staleConsumer);
+        } else {
+            List<PriorityTask> tasks = searchDatabase(query, collector);
+            //取消时直接结束所有等待，不需要等正在执行的子任务退出
+            Runnable cancelCallback = () -> tasks.forEach(PriorityTask::release);
+            token.register(cancelCallback);
+            try {
+                boolean isPriorityFolderSearched = searchPriorityFolder(query, collector);
+                searchCache(query, collector);
+                //按照优先级顺序返回数据库的结果，每个优先级完成后按得分排序返回
+                for (PriorityTask task : tasks) {
+                    task.finished.await();
+                    if (token.isCancelled()) {
+                        return collector.getResultNum();
+                    }
+                    collector.acceptAll(task.results.drainSorted());
+                    skipUnreachableTasks(tasks, collector);
+                }
+                //优先文件夹索引建立完成前的结果不完整，不保存
+                if (!isPriorityFolderSearched) {
+                    return collector.getResultNum();
+                }
+            } catch (InterruptedException ignored) {
+                return collector.getResultNum();
+            } finally {
+                token.unregister(cancelCallback);
+                checkExistsInBackground(collector, staleConsumer);
+            }
+        }
+        //重建索引、迁移分区时数据库中的记录不完整，结果不保存
+        if (!token.isCancelled() && databaseService.getStatus() == Enums.DatabaseStatus.NORMAL) {
+            QueryResultCache.Entry entry = new QueryResultCache.Entry(query, collector.getResults(), limit, priorityFolder, indexVersion);
+            queryResultCache.put(entry);
+            //结果数量达到limit时可能还有其他匹配的文件，不能用于过滤
+            if (entry.isComplete) {
+                lastSearch = entry;
+            }
+        }
+        return collector.getResultNum();
+    }
+
+    /**
+     * 在上一次的结果中过滤，结果顺序与上一次相同
+     *
+     * @param query   搜索条件
+     * @param results 上一次的结果
+     */
+    private void refine(SearchQuery query, List<String> results, ResultCollector collector) {
+        if (IsDebug.isDebug()) {
+            System.out.println("在上一次的" + results.size() + "个结果中过滤");
+        }
+        for (String each : results) {
+            if (collector.isStopped()) {
+                return;
+            }
+            if (query.isMatched(each) && collector.isNewResult(each)) {
+                collector.accept(each);
+            }
+        }
+    }
+
+    /**
+     * 高优先级已经找到的结果加上已经返回的结果达到limit后，低优先级的结果不可能再被返回，停止这些任务
+     * 已经从优先文件夹或缓存返回过的路径在取出时会被跳过，不计算在内
+     *
+     * @param tasks 按照优先级从高到低排列的任务
+     */
+    private void skipUnreachableTasks(List<PriorityTask> tasks, ResultCollector collector) {
+        int resultNumAhead = collector.getResultNum();
+        for (PriorityTask each : tasks) {
+            if (resultNumAhead >= collector.limit) {
+                each.isSkipped = true;
+            } else {
+                resultNumAhead += each.results.countExcluding(collector::isDelivered);
+            }
+        }
+    }
+
+    /**
+     * 在后台检查已经返回的数据库、缓存和优先文件夹结果是否还存在，不存在则从结果的来源中删除
+     * 优先文件夹的结果只从优先文件夹索引中删除，不发送给数据库
+     * 取消的搜索同样检查已经返回的部分
+     *
+     * @param staleConsumer 文件已不存在时调用，可以为null
+     */
+    private void checkExistsInBackground(ResultCollector collector, Consumer<String> staleConsumer) {
+        Map<String, ResultSource> indexedResults = collector.getIndexedResults();
+        if (indexedResults.isEmpty()) {
+            return;
+        }
+        CachedThreadPoolUtil.getInstance().executeIoTask(() -> {
+            LinkedHashSet<String> deletedPaths = new LinkedHashSet<>();
+            EventManagement eventManagement = EventManagement.getInstance();
+            indexedResults.forEach((path, source) -> {
+                if (Files.exists(Path.of(path))) {
+                    return;
+                }
+                if (source == ResultSource.CACHE) {
+                    eventManagement.putEvent(new DeleteFromCacheEvent(path));
+                } else if (source == ResultSource.PRIORITY_FOLDER) {
+                    priorityFolderIndex.remove(path);
+                } else {
+                    deletedPaths.add(path);
+                }
+                if (staleConsumer != null) {
+                    staleConsumer.accept(path);
+                }
+            });
+            if (!deletedPaths.isEmpty()) {
+                if (IsDebug.isDebug()) {
+                    System.out.println("删除" + deletedPaths.size() + "个已不存在的文件");
+                }
+                eventManagement.putEvent(new DeleteFromDatabaseEvent(deletedPaths));
+            }
+        });
+    }
+
+    /**
+     * 缓存的结果和过滤得到的结果没有记录来源，所有已经返回的结果都在后台检查
+     * 缓存中存在的路径删除缓存，其他路径从数据库中删除
+     *
+     * @param staleConsumer 文件已不存在时调用，可以为null
+     */
+    private void checkDeliveredExistsInBackground(ResultCollector collector, Consumer<String> staleConsumer) {
+        for (String each : collector.getResults()) {
+            if (databaseService.isCacheExist(each)) {
+                collector.addIndexedResult(each, ResultSource.CACHE);
+            } else if (priorityFolderIndex.contains(each)) {
+                collector.addIndexedResult(each, ResultSource.PRIORITY_FOLDER);
+            } else {
+                collector.addIndexedResult(each, ResultSource.DATABASE);
+            }
+        }
+        checkExistsInBackground(collector, staleConsumer);
+    }
+
+    /**
+     * 数据库和索引中ISDIR为-1表示未知，由旧版本数据库升级而来
+     */
+    private static Boolean toIsDirectory(int isDir) {
+        if (isDir == -1) {
+            return null;
+        }
+        return isDir == 1;
+    }
+
+    @EventListener(registerClass = UpdateDatabaseEvent.class)
+    private static void updateDatabaseEvent() {
+        getInstance().isDatabaseUpdated.set(true);
+    }
+
+    /**
+     * 读取上次保存的表权重，并按照保存后经过的时间衰减
+     */
+    private void readTableWeights() {
+        String weights = databaseService.getDbInfo(TABLE_WEIGHTS_KEY);
+        String savedTime = databaseService.getDbInfo(TABLE_WEIGHTS_TIME_KEY);
+        if (weights == null || savedTime == null) {
+            return;
+        }
+        try {
+            long elapsed = System.currentTimeMillis() - Long.parseLong(savedTime);
+            long periods = Math.max(0, TimeUnit.MILLISECONDS.toMinutes(elapsed) / TABLE_WEIGHT_DECAY_PERIOD_MINUTES);
+            double decay = Math.pow(TABLE_WEIGHT_DECAY_FACTOR, periods);
+            String[] split = RegexUtil.comma.split(weights);
+            for (int i = 0; i < split.length && i <= Constants.ALL_TABLE_NUM; i++) {
+                tableWeights.set(i, (long) (Long.parseLong(split[i]) * decay));
+            }
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 定时衰减表权重并保存，最近的搜索对表顺序的影响更大
+     */
+    private void decayAndSaveTableWeights() {
+        StringBuilder weights = new StringBuilder();
+        for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+            long weight;
+            long decayed;
+            do {
+                weight = tableWeights.get(i);
+                decayed = (long) (weight * TABLE_WEIGHT_DECAY_FACTOR);
+            } while (!tableWeights.compareAndSet(i, weight, decayed));
+            if (i != 0) {
+                weights.append(',');
+            }
+            weights.append(decayed);
+        }
+        if (databaseService.getStatus() == Enums.DatabaseStatus.NORMAL) {
+            databaseService.setDbInfo(TABLE_WEIGHTS_KEY, weights.toString());
+            databaseService.setDbInfo(TABLE_WEIGHTS_TIME_KEY, String.valueOf(System.currentTimeMillis()));
+        }
+    }
+
+    private void updateTableWeight(int tableNum, long weight) {
+        long origin = tableWeights.getAndAdd(tableNum, weight);
+        if (IsDebug.isDebug()) {
+            System.err.println("已更新list" + tableNum + "权重, 之前为" + origin + "***增加了" + weight);
+        }
+    }
+
+    private void initPriorityQueue() {
+        priorityQueue.clear();
+        try (SQLiteUtil.ReadOnlyConnection reader = SQLiteUtil.borrowReadOnlyConnection();
+             ResultSet resultSet = reader.getPreparedStatement("SELECT PRIORITY FROM priority order by priority desc;").executeQuery()) {
+            while (resultSet.next()) {
+                priorityQueue.add(resultSet.getInt("PRIORITY"));
+            }
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        }
+    }
+
+    /**
+     * 通过权重对表进行排序
+     *
+     * @return 表的编号
+     */
+    private List<Integer> getTableNumsByWeight() {
+        long[] weights = new long[Constants.ALL_TABLE_NUM + 1];
+        ArrayList<Integer> tableNums = new ArrayList<>();
+        for (int i = 0; i <= Constants.ALL_TABLE_NUM; i++) {
+            weights[i] = tableWeights.get(i);
+            tableNums.add(i);
+        }
+        tableNums.sort((o1, o2) -> Long.compare(weights[o2], weights[o1]));
+        if (IsDebug.isDebug()) {
+            for (int each : tableNums) {
+                System.out.println("已添加表list" + each + "----权重" + weights[each]);
+            }
+        }
+        return tableNums;
+    }
+
+    /**
+     * 开始在后台搜索数据库，每个优先级的每张表（或每批三元组候选路径）为一个任务，按优先级从高到低提交到搜索线程池
+     * 同一个优先级的所有任务完成后该优先级才算完成，结果仍然按优先级顺序返回
+     * 每个子任务完成后检查低优先级的任务是否已经不可能返回结果，不需要等待的线程轮询
+     *
+     * @param query     搜索条件
+     * @param collector 结果
+     * @return 按照优先级从高到低排列的任务
+     */
+    private List<PriorityTask> searchDatabase(SearchQuery query, ResultCollector collector) {
+        if (isDatabaseUpdated.get()) {
+            isDatabaseUpdated.set(false);
+            initPriorityQueue();
+        }
+        List<Integer> tableNums = getTableNumsByWeight();
+        //三元组索引可用时直接匹配候选路径，不再扫描数据库
+        Map<Integer, List<TrigramIndex.Candidate>> candidates = databaseService.getCandidatesByTrigram(query.getNameKeywords());
+        //开启列式索引后直接扫描索引文件
+        ColumnarPathStore columnarPathStore = databaseService.getColumnarPathStore();
+
+        ArrayList<PriorityTask> tasks = new ArrayList<>();
+        ArrayList<List<Consumer<PriorityTask>>> unitsOfTasks = new ArrayList<>();
+        for (int priority : priorityQueue) {
+            ArrayList<Consumer<PriorityTask>> units = new ArrayList<>();
+            if (candidates != null) {
+                List<TrigramIndex.Candidate> eachPriorityCandidates = candidates.getOrDefault(priority, Collections.emptyList());
+                for (int i = 0; i < eachPriorityCandidates.size(); i += CANDIDATE_BATCH_SIZE) {
+                    List<TrigramIndex.Candidate> batch =
+                            eachPriorityCandidates.subList(i, Math.min(i + CANDIDATE_BATCH_SIZE, eachPriorityCandidates.size()));
+                    units.add(task -> searchCandidates(query, batch, collector, task));
+                }
+            } else if (columnarPathStore != null) {
+                units.add(task -> searchColumnar(query, priority, columnarPathStore, collector, task));
+            } else {
+                for (int tableNum : tableNums) {
+                    units.add(task -> {
+                        String sql = "SELECT PATH, ISDIR, PINYIN FROM list" + tableNum + " WHERE priority=" + priority;
+                        int matchedNum = searchTable(query, sql, collector, task);
+                        long weight = Math.min(matchedNum, 5);
+                        if (weight != 0L) {
+                            updateTableWeight(tableNum, weight);
+                        }
+                    });
+                }
+            }
+            tasks.add(new PriorityTask(collector.limit, units.size()));
+            unitsOfTasks.add(units);
+        }
+        //所有任务创建完成后再提交，子任务完成时需要遍历所有任务
+        CachedThreadPoolUtil cachedThreadPoolUtil = CachedThreadPoolUtil.getInstance();
+        for (int i = 0; i < tasks.size(); i++) {
+            PriorityTask task = tasks.get(i);
+            for (Consumer<PriorityTask> unit : unitsOfTasks.get(i)) {
+                Future<?> future = cachedThreadPoolUtil.executeSearchTask(() -> {
+                    try {
+                        //更高优先级的结果已经足够或者已经取消，不再执行
+                        if (!task.isStopped(collector)) {
+                            unit.accept(task);
+                        }
+                    } finally {
+                        task.finished.countDown();
+                        skipUnreachableTasks(tasks, collector);
+                    }
+                });
+                if (future == null) {
+                    //线程池已经关闭
+                    task.finished.countDown();
+                }
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * 搜索数据库中的一张表
+     *
+     * @param sql sql
+     * @return 匹配的数量
+     */
+    private int searchTable(SearchQuery query, String sql, ResultCollector collector, PriorityTask task) {
+        int count = 0;
+        //取消后正在执行的查询立即结束
+        SQLiteUtil.setInterruptCondition(() -> task.isStopped(collector));
+        //只读连接不会被数据库写入阻塞，等待空闲连接时取消则立即放弃
+        try (SQLiteUtil.ReadOnlyConnection reader = SQLiteUtil.borrowReadOnlyConnection(() -> task.isStopped(collector));
+             ResultSet resultSet = reader.getPreparedStatement(sql).executeQuery()) {
+            while (resultSet.next()) {
+                //更高优先级的结果已经足够
+                //用户重新输入了信息
+                if (task.isStopped(collector)) {
+                    return count;
+                }
+                if (checkIsMatchedAndAddToList(query, resultSet.getString("PATH"), toIsDirectory(resultSet.getInt("ISDIR")), resultSet.getString("PINYIN"), collector, task.results, ResultSource.DATABASE)) {
+                    count++;
+                }
+            }
+        } catch (SQLException throwables) {
+            if (!task.isStopped(collector)) {
+                System.err.println("error sql : " + sql);
+                throwables.printStackTrace();
+            }
+        } finally {
+            SQLiteUtil.clearInterruptCondition();
+        }
+        return count;
+    }
+
+    /**
+     * 从三元组索引给出的候选路径中匹配
+     *
+     * @param candidates 候选路径
+     */
+    private void searchCandidates(SearchQuery query, List<TrigramIndex.Candidate> candidates, ResultCollector collector, PriorityTask task) {
+        for (TrigramIndex.Candidate each : candidates) {
+            if (task.isStopped(collector)) {
+                return;
+            }
+            checkIsMatchedAndAddToList(query, each.getPath(), toIsDirectory(each.getIsDirectory()), each.getPinyin(), collector, task.results, ResultSource.DATABASE);
+        }
+    }
+
+    /**
+     * 扫描列式索引中某个优先级的所有记录
+     * 文件名先在字节层面进行过滤，只有可能匹配的记录才会生成完整路径
+     *
+     * @param priority 优先级
+     * @param store    列式索引
+     */
+    private void searchColumnar(SearchQuery query, int priority, ColumnarPathStore store, ResultCollector collector, PriorityTask task) {
+        byte[][] nameKeywords = getLowerCaseNameKeywordBytes(query);
+        store.scan(priority, (parentId, name, length, isDirectory) -> {
+            if (task.isStopped(collector)) {
+                return false;
+            }
+            if (isNameMaybeMatched(name, length, nameKeywords)) {
+                String path = store.getPath(parentId, name, length);
+                if (!store.isRemoved(path)) {
+                    checkIsMatchedAndAddToList(query, path, toIsDirectory(isDirectory), null, collector, task.results, ResultSource.DATABASE);
+                }
+            }
+            return true;
+        });
+        store.forEachAdded(priority, (path, isDirectory) -> {
+            if (!task.isStopped(collector)) {
+                checkIsMatchedAndAddToList(query, path, toIsDirectory(isDirectory), null, collector, task.results, ResultSource.DATABASE);
+            }
+        });
+    }
+
+    /**
+     * 从缓存中搜索结果，扫描完成后按得分排序返回
+     */
+    private void searchCache(SearchQuery query, ResultCollector collector) {
+        TopKResults results = new TopKResults(collector.limit);
+        for (Map.Entry<String, Boolean> each : databaseService.getCache().entrySet()) {
+            if (collector.isStopped()) {
+                break;
+            }
+            checkIsMatchedAndAddToList(query, each.getKey(), each.getValue(), null, collector, results, ResultSource.CACHE);
+        }
+        collector.acceptAll(results.drainSorted());
+    }
+
+    /**
+     * 从优先文件夹索引中搜索结果，匹配完成后按得分排序返回
+     *
+     * @return false如果索引还没有建立完成，结果不完整
+     */
+    private boolean searchPriorityFolder(SearchQuery query, ResultCollector collector) {
+        if (!priorityFolderIndex.prepare(AllConfigs.getInstance().getPriorityFolder())) {
+            return !priorityFolderIndex.isBuilding();
+        }
+        TopKResults results = new TopKResults(collector.limit);
+        priorityFolderIndex.forEach((path, isDirectory) -> {
+            if (!collector.isStopped()) {
+                checkIsMatchedAndAddToList(query, path, isDirectory, null, collector, results, ResultSource.PRIORITY_FOLDER);
+            }
+        });
+        collector.acceptAll(results.drainSorted());
+        return true;
+    }
+
+    /**
+     * 检查文件路径是否匹配，然后加入到排序的结果中
+     * 不检查文件是否存在，返回的结果在搜索结束后按照来源统一检查
+     *
+     * @param path        文件路径
+     * @param isDirectory 是否为文件夹，未知时为null
+     * @param pinyin      索引中保存的拼音，未知时为null
+     * @param results     数据库、缓存或优先文件夹的排序结果
+     * @param source      结果的来源，文件不存在时从该来源中删除
+     * @return true如果匹配成功
+     */
+    private boolean checkIsMatchedAndAddToList(SearchQuery query, String path, Boolean isDirectory, String pinyin, ResultCollector collector, TopKResults results, ResultSource source) {
+        if (!query.isMatched(path, isDirectory, pinyin)) {
+            return false;
+        }
+        //已经返回过的路径不再占用排序结果的位置，之后才返回的路径在取出时去重
+        if (collector.isDelivered(path)) {
+            return true;
+        }
+        collector.addIndexedResult(path, source);
+        results.offer(path, openHistoryService.getScore(path) * MATCH_SCORE_RANGE + query.getMatchScore(path));
+        return true;
+    }
+
+    /**
+     * 将文件名关键字转换为小写的utf-8编码
+     *
+     * @return 关键字编码
+     */
+    private byte[][] getLowerCaseNameKeywordBytes(SearchQuery query) {
+        List<String> nameKeywords = query.getNameKeywords();
+        byte[][] ret = new byte[nameKeywords.size()][];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = nameKeywords.get(i).toLowerCase().getBytes(StandardCharsets.UTF_8);
+        }
+        return ret;
+    }
+
+    /**
+     * 在字节层面判断文件名是否有可能匹配所有关键字
+     * 包含非ASCII字符的文件名可能通过拼音匹配，总是返回true，交给SearchQuery进行完整的匹配
+     *
+     * @param name     文件名utf-8编码
+     * @param length   文件名长度
+     * @param keywords 小写的关键字编码
+     * @return false则一定不匹配
+     */
+    private boolean isNameMaybeMatched(byte[] name, int length, byte[][] keywords) {
+        for (int i = 0; i < length; i++) {
+            if (name[i] < 0) {
+                return true;
+            }
+        }
+        for (byte[] keyword : keywords) {
+            if (indexOfIgnoreCase(name, length, keyword) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOfIgnoreCase(byte[] src, int length, byte[] target) {
+        final int max = length - target.length;
+        for (int i = 0; i <= max; i++) {
+            int j = 0;
+            while (j < target.length) {
+                byte b = src[i + j];
+                if (b >= 'A' && b <= 'Z') {
+                    b += 32;
+                }
+                if (b != target[j]) {
+                    break;
+                }
+                j++;
+            }
+            if (j == target.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 一个优先级的数据库搜索任务
+     */
+    private static class PriorityTask {
+        private final TopKResults results;
+        //每个子任务完成后减一
+        private final CountDownLatch finished;
+        //更高优先级的结果已经足够，该优先级的结果不会再被返回
+        private volatile boolean isSkipped = false;
+
+        private PriorityTask(int limit, int unitNum) {
+            this.results = new TopKResults(limit);
+            this.finished = new CountDownLatch(unitNum);
+        }
+
+        private boolean isStopped(ResultCollector collector) {
+            return isSkipped || collector.isStopped();
+        }
+
+        /**
+         * 搜索被取消，结束对该优先级的等待
+         */
+        private void release() {
+            while (finished.getCount() > 0) {
+                finished.countDown();
+            }
+        }
+    }
+
+    /**
+     * 去除重复结果并返回给调用者，结果数量达到limit或者被取消后停止
+     */
+    private static class ResultCollector {
+        private final int limit;
+        private final CancellationToken token;
+        private final Consumer<String> consumer;
+        private final Set<String> resultSet = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger resultNum = new AtomicInteger(0);
+        private final ArrayList<String> results = new ArrayList<>();
+        //排序后返回的结果，value为结果的来源
+        private final Map<String, ResultSource> indexedResults = new ConcurrentHashMap<>();
+
+        private ResultCollector(int limit, CancellationToken token, Consumer<String> consumer) {
+            this.limit = limit;
+            this.token = token;
+            this.consumer = consumer;
+        }
+
+        private boolean isStopped() {
+            return token.isCancelled() || resultNum.get() >= limit;
+        }
+
+        /**
+         * 记录找到的结果
+         *
+         * @return false如果结果重复
+         */
+        private boolean isNewResult(String path) {
+            return resultSet.add(path);
+        }
+
+        private boolean isDelivered(String path) {
+            return resultSet.contains(path);
+        }
+
+        private void accept(String path) {
+            if (token.isCancelled()) {
+                return;
+            }
+            synchronized (this) {
+                if (resultNum.get() >= limit) {
+                    return;
+                }
+                resultNum.incrementAndGet();
+                results.add(path);
+                consumer.accept(path);
+            }
+        }
+
+        /**
+         * 按顺序返回排序后的结果，跳过已经返回过的路径
+         */
+        private void acceptAll(List<String> results) {
+            for (String each : results) {
+                if (isStopped()) {
+                    return;
+                }
+                if (isNewResult(each)) {
+                    accept(each);
+                }
+            }
+        }
+
+        private int getResultNum() {
+            return resultNum.get();
+        }
+
+        private synchronized List<String> getResults() {
+            return new ArrayList<>(results);
+        }
+
+        private void addIndexedResult(String path, ResultSource source) {
+            indexedResults.putIfAbsent(path, source);
+        }
+
+        /**
+         * 获取已经返回给调用者的结果以及来源，超出limit未返回的不需要检查
+         */
+        private synchronized Map<String, ResultSource> getIndexedResults() {
+            LinkedHashMap<String, ResultSource> returned = new LinkedHashMap<>();
+            for (String each : results) {
+                ResultSource source = indexedResults.get(each);
+                if (source != null) {
+                    returned.put(each, source);
+                }
+            }
+            return returned;
+        }
+    }
+
+    /**
+     * 结果的来源，文件已不存在时从对应的索引中删除
+     */
+    private enum ResultSource {
+        DATABASE, CACHE, PRIORITY_FOLDER
+    }
+}
@@ -0,0 +1,192 @@
+package file.engine.services.search;
+
+import file.engine.utils.RegexUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 解析后的搜索条件
+ * 输入格式为 关键字1;关键字2:规则1;规则2，以/开头的关键字匹配父路径，其他关键字匹配文件名
+ * 规则包括 f（只匹配文件） d（只匹配文件夹） full（全字匹配） case（区分大小写）
+ */
+public class SearchQuery {
+    private final String searchText;
+    private final String[] keywords;
+    private final String[] searchCase;
+    private final QueryMatcher matcher;
+
+    private SearchQuery(String searchText, String[] searchCase) {
+        this.searchText = searchText;
+        this.keywords = RegexUtil.semicolon.split(searchText);
+        this.searchCase = searchCaseToLowerAndRemoveConflict(searchCase);
+        this.matcher = new QueryMatcher(this.searchText, this.keywords, this.searchCase);
+    }
+
+    /**
+     * 解析搜索框中的文字
+     *
+     * @param text 搜索框中的文字
+     * @return 搜索条件
+     */
+    public static SearchQuery parse(String text) {
+        String[] strings = RegexUtil.colon.split(text);
+        if (strings.length == 2) {
+            return new SearchQuery(strings[0], RegexUtil.semicolon.split(strings[1]));
+        }
+        return new SearchQuery(strings[0], null);
+    }
+
+    public String getSearchText() {
+        return searchText;
+    }
+
+    public String[] getKeywords() {
+        return keywords;
+    }
+
+    public String[] getSearchCase() {
+        return searchCase;
+    }
+
+    /**
+     * 规则已经转为小写并去掉冲突，相同含义的输入得到相同的key
+     *
+     * @return 用于缓存搜索结果的key
+     */
+    public String getKey() {
+        return searchCase == null ? searchText : searchText + ":" + String.join(";", searchCase);
+    }
+
+    /**
+     * 获取所有匹配文件名的关键字，去掉匹配路径的关键字
+     *
+     * @return 文件名关键字
+     */
+    public List<String> getNameKeywords() {
+        ArrayList<String> nameKeywords = new ArrayList<>();
+        for (String each : keywords) {
+            if (each == null || each.isEmpty() || each.startsWith("/") || each.startsWith(File.separator)) {
+                continue;
+            }
+            nameKeywords.add(each);
+        }
+        return nameKeywords;
+    }
+
+    /**
+     * 判断当前搜索条件能匹配的结果是否一定是之前搜索条件结果的子集，如输入"repo"后继续输入"repor"
+     * 每个旧关键字都被同一位置的新关键字包含，或者在末尾增加了新的关键字，并且规则相同
+     * full规则要求文件名与输入完全相同，不满足子集关系
+     *
+     * @param previous 之前的搜索条件
+     * @return true如果可以在之前的结果中过滤
+     */
+    public boolean isNarrowerThan(SearchQuery previous) {
+        if (!Arrays.equals(searchCase, previous.searchCase) || hasSearchCase("full")) {
+            return false;
+        }
+        String[] previousKeywords = previous.keywords;
+        if (previousKeywords.length > keywords.length) {
+            return false;
+        }
+        boolean isCaseSensitive = hasSearchCase("case");
+        for (int i = 0; i < previousKeywords.length; i++) {
+            String previousKeyword = previousKeywords[i];
+            String keyword = keywords[i];
+            if (previousKeyword.isEmpty()) {
+                continue;
+            }
+            if (isPathKeyword(previousKeyword) != isPathKeyword(keyword)) {
+                return false;
+            }
+            if (isCaseSensitive) {
+                if (!keyword.contains(previousKeyword)) {
+                    return false;
+                }
+            } else if (!keyword.toLowerCase().contains(previousKeyword.toLowerCase())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 检查文件路径是否匹配所有输入规则
+     *
+     * @param path 文件路径
+     * @return true如果满足所有条件 否则false
+     */
+    public boolean isMatched(String path) {
+        return isMatched(path, null);
+    }
+
+    /**
+     * 检查文件路径是否匹配所有输入规则
+     *
+     * @param path        文件路径
+     * @param isDirectory 索引中记录的是否为文件夹，为null时f和d规则需要读取磁盘
+     * @return true如果满足所有条件 否则false
+     */
+    public boolean isMatched(String path, Boolean isDirectory) {
+        return matcher.isMatched(path, isDirectory, null);
+    }
+
+    /**
+     * 检查文件路径是否匹配所有输入规则
+     *
+     * @param path        文件路径
+     * @param isDirectory 索引中记录的是否为文件夹，为null时f和d规则需要读取磁盘
+     * @param pinyin      索引中保存的拼音，为null时在需要时转换
+     * @return true如果满足所有条件 否则false
+     */
+    public boolean isMatched(String path, Boolean isDirectory, String pinyin) {
+        return matcher.isMatched(path, isDirectory, pinyin);
+    }
+
+    /**
+     * 计算已经匹配的文件路径的得分，用于同一优先级内的排序
+     *
+     * @param path 已经匹配的文件路径
+     * @return 得分，越高越靠前
+     */
+    public int getMatchScore(String path) {
+        return matcher.getMatchScore(path);
+    }
+
+    private boolean hasSearchCase(String eachCase) {
+        if (searchCase == null) {
+            return false;
+        }
+        for (String each : searchCase) {
+            if (each.equals(eachCase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPathKeyword(String keyword) {
+        return keyword.startsWith("/") || keyword.startsWith(File.separator);
+    }
+
+    private static String[] searchCaseToLowerAndRemoveConflict(String[] searchCase) {
+        if (searchCase == null || searchCase.length == 0) {
+            return null;
+        }
+        ArrayList<String> list = new ArrayList<>();
+        for (String each : searchCase) {
+            list.add(each.toLowerCase());
+        }
+        if (list.contains("f") && list.contains("d")) {
+            list.remove("f");
+            list.remove("d");
+        }
+        if (list.isEmpty()) {
+            return null;
+        }
+        return list.toArray(new String[0]);
+    }
+}
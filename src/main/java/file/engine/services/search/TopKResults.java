@@ -0,0 +1,89 @@
+package file.engine.services.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * 最多保存k个得分最高的结果，多个搜索线程可以同时添加
+ * 内部为小顶堆，堆顶是当前最差的结果，新结果只需要与堆顶比较，不需要复制已有的结果
+ */
+class TopKResults {
+    //得分高的在后，得分相同时路径短的在后，堆顶为最差的结果
+    private static final Comparator<ScoredResult> WORST_FIRST = Comparator
+            .comparingInt((ScoredResult o) -> o.score)
+            .thenComparing((o1, o2) -> Integer.compare(o2.path.length(), o1.path.length()))
+            .thenComparing((o1, o2) -> o2.path.compareTo(o1.path));
+
+    private final int k;
+    private final PriorityQueue<ScoredResult> heap;
+
+    TopKResults(int k) {
+        this.k = k;
+        this.heap = new PriorityQueue<>(Math.min(k, 256) + 1, WORST_FIRST);
+    }
+
+    /**
+     * 添加结果，已满时替换掉最差的结果
+     *
+     * @param path  文件路径
+     * @param score 得分，越高越靠前
+     */
+    synchronized void offer(String path, int score) {
+        ScoredResult result = new ScoredResult(path, score);
+        if (heap.size() < k) {
+            heap.add(result);
+        } else if (k > 0 && WORST_FIRST.compare(result, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(result);
+        }
+    }
+
+    synchronized int size() {
+        return heap.size();
+    }
+
+    /**
+     * 统计除去excluded之外的结果数量
+     *
+     * @param excluded 不需要统计的结果
+     * @return 数量
+     */
+    synchronized int countExcluding(Predicate<String> excluded) {
+        int count = 0;
+        for (ScoredResult each : heap) {
+            if (!excluded.test(each.path)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 取出所有结果，按得分从高到低排列
+     *
+     * @return 结果
+     */
+    synchronized List<String> drainSorted() {
+        ArrayList<ScoredResult> sorted = new ArrayList<>(heap);
+        heap.clear();
+        sorted.sort(WORST_FIRST.reversed());
+        ArrayList<String> ret = new ArrayList<>(sorted.size());
+        for (ScoredResult each : sorted) {
+            ret.add(each.path);
+        }
+        return ret;
+    }
+
+    private static class ScoredResult {
+        private final String path;
+        private final int score;
+
+        private ScoredResult(String path, int score) {
+            this.path = path;
+            this.score = score;
+        }
+    }
+}
@@ -1,23 +1,53 @@
 package file.engine.utils;
 
+import file.engine.IsDebug;
 import file.engine.constant.Constants;
 
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 按用途划分的线程池
+ * loop：长时间运行的循环线程，每个任务独占一个线程，线程数有上限，一次性的任务不要放在这里，应该使用io
+ * search：CPU密集的搜索任务，工作窃取线程池，线程数与CPU核心数相同，输入过快时任务排队，不会占用其他线程池
+ * io：遍历文件夹等IO任务
+ * scheduled：定时任务
+ * 启动参数-DFile_Engine_VirtualThread=true并且JDK支持时，loop和io使用虚拟线程
+ */
 public class CachedThreadPoolUtil {
-    private final ExecutorService cachedThreadPool = new ThreadPoolExecutor(
-            0,
-            200,
-            60L,
-            TimeUnit.SECONDS,
-            new SynchronousQueue<>(),
-            Executors.defaultThreadFactory());
+    private static final int CPU_CORES = Runtime.getRuntime().availableProcessors();
+    //常驻的循环线程约30个，再加上设置窗口和插件市场打开时的临时循环线程
+    private static final int MAX_LOOP_THREAD_NUM = 64;
+
+    private final NamedPool loopPool;
+    private final NamedPool searchPool;
+    private final NamedPool ioPool;
+    private final ScheduledThreadPoolExecutor scheduledPool =
+            new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("scheduled"));
     private final AtomicBoolean isShutdown = new AtomicBoolean(false);
 
     private static volatile CachedThreadPoolUtil INSTANCE = null;
 
     private CachedThreadPoolUtil() {
+        ExecutorService virtualThreadExecutor = isUseVirtualThread() ? createVirtualThreadExecutor() : null;
+        loopPool = new NamedPool("loop", virtualThreadExecutor != null ? virtualThreadExecutor :
+                new ThreadPoolExecutor(0, MAX_LOOP_THREAD_NUM, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                        new NamedThreadFactory("loop"), new LoopOverflowPolicy()));
+        //asyncMode为true时提交的任务先进先出，先提交的高优先级任务先执行
+        searchPool = new NamedPool("search", new ForkJoinPool(CPU_CORES, new NamedForkJoinWorkerThreadFactory("search"), null, true));
+        if (virtualThreadExecutor != null) {
+            ioPool = new NamedPool("io", virtualThreadExecutor);
+        } else {
+            ThreadPoolExecutor ioExecutor = new ThreadPoolExecutor(CPU_CORES * 2, CPU_CORES * 2, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new NamedThreadFactory("io"));
+            ioExecutor.allowCoreThreadTimeOut(true);
+            ioPool = new NamedPool("io", ioExecutor);
+        }
+        if (IsDebug.isDebug()) {
+            scheduledPool.scheduleAtFixedRate(() -> System.out.println(getStatistics()), 60, 60, TimeUnit.SECONDS);
+        }
     }
 
     public static CachedThreadPoolUtil getInstance() {
@@ -31,25 +61,216 @@ public class CachedThreadPoolUtil {
         return INSTANCE;
     }
 
+    /**
+     * 执行长时间运行的任务
+     */
     public <T> Future<T> executeTask(Callable<T> todo) {
         if (isShutdown.get()) {
             return null;
         }
-        return cachedThreadPool.submit(todo);
+        return loopPool.submit(todo);
     }
 
+    /**
+     * 执行长时间运行的任务
+     */
     public Future<?> executeTask(Runnable todo) {
         if (isShutdown.get()) {
             return null;
         }
-        return cachedThreadPool.submit(todo);
+        return loopPool.submit(todo);
+    }
+
+    /**
+     * 执行CPU密集的搜索任务，线程全部繁忙时排队等待
+     */
+    public Future<?> executeSearchTask(Runnable todo) {
+        if (isShutdown.get()) {
+            return null;
+        }
+        return searchPool.submit(todo);
+    }
+
+    /**
+     * 执行遍历文件夹等IO任务
+     */
+    public <T> Future<T> executeIoTask(Callable<T> todo) {
+        if (isShutdown.get()) {
+            return null;
+        }
+        return ioPool.submit(todo);
+    }
+
+    /**
+     * 执行遍历文件夹等IO任务，以及其他一次性的任务
+     */
+    public Future<?> executeIoTask(Runnable todo) {
+        if (isShutdown.get()) {
+            return null;
+        }
+        return ioPool.submit(todo);
+    }
+
+    /**
+     * 定时执行任务
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable todo, long initialDelay, long period, TimeUnit unit) {
+        if (isShutdown.get()) {
+            return null;
+        }
+        return scheduledPool.scheduleAtFixedRate(todo, initialDelay, period, unit);
+    }
+
+    /**
+     * 获取各个线程池正在运行和排队的任务数量
+     *
+     * @return 统计信息
+     */
+    public String getStatistics() {
+        return loopPool + "\n" + searchPool + "\n" + ioPool + "\n" +
+                "scheduled: active " + scheduledPool.getActiveCount() + ", queued " + scheduledPool.getQueue().size();
     }
 
     public void shutdown() throws InterruptedException {
         isShutdown.set(true);
-        cachedThreadPool.shutdown();
-        if (!cachedThreadPool.awaitTermination(Constants.THREAD_POOL_AWAIT_TIMEOUT, TimeUnit.SECONDS)) {
+        scheduledPool.shutdown();
+        loopPool.executor.shutdown();
+        searchPool.executor.shutdown();
+        ioPool.executor.shutdown();
+        if (!loopPool.executor.awaitTermination(Constants.THREAD_POOL_AWAIT_TIMEOUT, TimeUnit.SECONDS) ||
+                !searchPool.executor.awaitTermination(Constants.THREAD_POOL_AWAIT_TIMEOUT, TimeUnit.SECONDS) ||
+                !ioPool.executor.awaitTermination(Constants.THREAD_POOL_AWAIT_TIMEOUT, TimeUnit.SECONDS)) {
             System.err.println("线程池等待超时");
         }
     }
+
+    private static boolean isUseVirtualThread() {
+        return "true".equalsIgnoreCase(System.getProperty("File_Engine_VirtualThread"));
+    }
+
+    /**
+     * JDK21以上使用虚拟线程，通过反射调用，低版本JDK返回null
+     *
+     * @return 每个任务一个虚拟线程的ExecutorService
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            System.err.println("当前JDK不支持虚拟线程");
+            return null;
+        }
+    }
+
+    /**
+     * 记录排队和正在运行的任务数量
+     */
+    private static class NamedPool {
+        private final String name;
+        private final ExecutorService executor;
+        private final AtomicInteger queuedNum = new AtomicInteger(0);
+        private final AtomicInteger activeNum = new AtomicInteger(0);
+        private final AtomicLong completedNum = new AtomicLong(0);
+
+        private NamedPool(String name, ExecutorService executor) {
+            this.name = name;
+            this.executor = executor;
+        }
+
+        private <T> Future<T> submit(Callable<T> todo) {
+            queuedNum.incrementAndGet();
+            try {
+                return executor.submit(() -> {
+                    beforeExecute();
+                    try {
+                        return todo.call();
+                    } finally {
+                        afterExecute();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queuedNum.decrementAndGet();
+                throw e;
+            }
+        }
+
+        private Future<?> submit(Runnable todo) {
+            queuedNum.incrementAndGet();
+            try {
+                return executor.submit(() -> {
+                    beforeExecute();
+                    try {
+                        todo.run();
+                    } finally {
+                        afterExecute();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queuedNum.decrementAndGet();
+                throw e;
+            }
+        }
+
+        private void beforeExecute() {
+            queuedNum.decrementAndGet();
+            activeNum.incrementAndGet();
+        }
+
+        private void afterExecute() {
+            activeNum.decrementAndGet();
+            completedNum.incrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return name + ": active " + activeNum.get() + ", queued " + queuedNum.get() + ", completed " + completedNum.get();
+        }
+    }
+
+    /**
+     * 循环线程不能排队，排队的循环永远不会开始执行
+     * 超出上限时使用单独的线程运行，调用者不需要处理拒绝，线程池关闭后不再执行
+     */
+    private static class LoopOverflowPolicy implements RejectedExecutionHandler {
+        private final NamedThreadFactory threadFactory = new NamedThreadFactory("loop-overflow");
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            System.err.println("loop线程池已满，使用单独的线程运行，当前线程数：" + executor.getPoolSize());
+            threadFactory.newThread(r).start();
+        }
+    }
+
+    private static class NamedForkJoinWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threadNum = new AtomicInteger(0);
+
+        private NamedForkJoinWorkerThreadFactory(String poolName) {
+            this.prefix = "File-Engine-" + poolName + "-";
+        }
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(prefix + threadNum.incrementAndGet());
+            return thread;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threadNum = new AtomicInteger(0);
+
+        private NamedThreadFactory(String poolName) {
+            this.prefix = "File-Engine-" + poolName + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, prefix + threadNum.incrementAndGet());
+        }
+    }
 }
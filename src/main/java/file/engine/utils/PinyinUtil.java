@@ -11,8 +11,19 @@ public class PinyinUtil {
      * @return true如果存在
      */
     public static boolean isContainChinese(String str) {
+        return isContainChinese(str, 0);
+    }
+
+    /**
+     * 判断字符串从beginIndex开始的部分是否存在汉字
+     *
+     * @param str        字符串
+     * @param beginIndex 开始位置
+     * @return true如果存在
+     */
+    public static boolean isContainChinese(String str, int beginIndex) {
         final int length = str.length();
-        for (int i = 0; i < length; i++) {
+        for (int i = beginIndex; i < length; i++) {
             if (Pinyin.isChinese(str.charAt(i))) {
                 return true;
             }
@@ -30,4 +41,28 @@ public class PinyinUtil {
     public static String toPinyin(String str, String separator) {
         return Pinyin.toPinyin(str, separator).toLowerCase();
     }
+
+    /**
+     * 生成用于搜索的拼音，格式为 全拼;首字母，如"北京大学.txt"转换为"beijingdaxue.txt;bjdx.txt"
+     * 搜索关键字以分号分隔，不会跨越两部分匹配
+     *
+     * @param name 文件名
+     * @return 不包含汉字时返回空字符串
+     */
+    public static String toSearchablePinyin(String name) {
+        if (!isContainChinese(name)) {
+            return "";
+        }
+        final int length = name.length();
+        StringBuilder initials = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (Pinyin.isChinese(c)) {
+                initials.append(Pinyin.toPinyin(c).charAt(0));
+            } else {
+                initials.append(c);
+            }
+        }
+        return toPinyin(name, "") + ';' + initials.toString().toLowerCase();
+    }
 }
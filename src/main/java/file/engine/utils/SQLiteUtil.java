@@ -1,24 +1,53 @@
 package file.engine.utils;
 
 import file.engine.IsDebug;
+import org.sqlite.ProgressHandler;
 import org.sqlite.SQLiteConfig;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
+ * 一个写入连接和READER_NUM个只读连接，数据库使用WAL模式，读取不会被写入阻塞，也不会阻塞写入
+ * getConnection()、getStatement()、getPreparedStatement()使用写入连接，只在后台线程中执行的查询可以直接使用
+ * 搜索等需要与写入同时进行的查询通过borrowReadOnlyConnection()取得只读连接
+ *
  * @author XUANXU
  */
 public class SQLiteUtil {
     private static final SQLiteConfig sqLiteConfig = new SQLiteConfig();
+    private static final SQLiteConfig readOnlyConfig = new SQLiteConfig();
     private static Connection conn;
+    private static final int READER_NUM = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+    private static final ArrayBlockingQueue<ReadOnlyConnection> readers = new ArrayBlockingQueue<>(READER_NUM);
+    private static final ArrayList<ReadOnlyConnection> allReaders = new ArrayList<>();
+    //每执行一定数量的虚拟机指令检查一次中断条件
+    private static final int PROGRESS_HANDLER_VM_CALLS = 1000;
+    private static final ThreadLocal<BooleanSupplier> interruptCondition = new ThreadLocal<>();
+    //WAL中的页数超过该值时提交后自动执行检查点，页大小为默认的4KB，约16MB
+    private static final int WAL_AUTO_CHECKPOINT_PAGES = 4096;
+    //检查点完成后WAL文件截断到该大小，重建索引或整理数据库后WAL文件不会一直占用大量空间
+    private static final long JOURNAL_SIZE_LIMIT = 64L * 1024 * 1024;
+    //等待只读连接的最长时间，连接没有被归还时不会一直阻塞
+    private static final long BORROW_TIMEOUT_MILLIS = 30 * 1000;
+    //等待期间检查是否已经取消的间隔
+    private static final long BORROW_CHECK_INTERVAL_MILLIS = 100;
 
     private static void initSqliteConfig() {
         sqLiteConfig.setTempStore(SQLiteConfig.TempStore.MEMORY);
-        sqLiteConfig.setJournalMode(SQLiteConfig.JournalMode.OFF);
-        sqLiteConfig.setPageSize(65535);
+        //WAL模式下写入中途崩溃不会损坏数据库，NORMAL只可能丢失最后提交的事务
+        sqLiteConfig.setJournalMode(SQLiteConfig.JournalMode.WAL);
         sqLiteConfig.setDefaultCacheSize(256 * 1024);
-        sqLiteConfig.setSynchronous(SQLiteConfig.SynchronousMode.OFF);
+        sqLiteConfig.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
         sqLiteConfig.setLockingMode(SQLiteConfig.LockingMode.NORMAL);
+        //journal_mode保存在数据库文件中，只读连接不需要也不能修改
+        readOnlyConfig.setReadOnly(true);
+        readOnlyConfig.setTempStore(SQLiteConfig.TempStore.MEMORY);
+        readOnlyConfig.setLockingMode(SQLiteConfig.LockingMode.NORMAL);
     }
 
     /**
@@ -59,19 +88,161 @@ public class SQLiteUtil {
         return conn;
     }
 
+    /**
+     * 从只读连接池中取出一个连接，没有空闲连接时等待，使用完后必须调用close()归还
+     *
+     * @return 只读连接
+     * @throws SQLException 失败或者等待超时
+     */
+    public static ReadOnlyConnection borrowReadOnlyConnection() throws SQLException {
+        return borrowReadOnlyConnection(() -> false);
+    }
+
+    /**
+     * 从只读连接池中取出一个连接，没有空闲连接时等待，使用完后必须调用close()归还
+     * 等待超过BORROW_TIMEOUT_MILLIS或者isCancelled满足时放弃
+     *
+     * @param isCancelled 是否已经取消，如搜索被取消
+     * @return 只读连接
+     * @throws SQLException 失败、等待超时或者已经取消
+     */
+    public static ReadOnlyConnection borrowReadOnlyConnection(BooleanSupplier isCancelled) throws SQLException {
+        if (allReaders.isEmpty()) {
+            throw new SQLException("The connection must be initialized first, call initConnection(String url)");
+        }
+        try {
+            final long deadline = System.currentTimeMillis() + BORROW_TIMEOUT_MILLIS;
+            while (!isCancelled.getAsBoolean()) {
+                ReadOnlyConnection reader = readers.poll(BORROW_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (reader != null) {
+                    return reader;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new SQLException("Timed out waiting for a read-only connection");
+                }
+            }
+            throw new SQLException("Cancelled while waiting for a read-only connection");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read-only connection", e);
+        }
+    }
+
     public static void initConnection(String url) throws SQLException {
         initSqliteConfig();
+        //先打开写入连接，将数据库切换为WAL模式
         conn = DriverManager.getConnection(url, sqLiteConfig.toProperties());
+        setProgressHandler(conn);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA wal_autocheckpoint=" + WAL_AUTO_CHECKPOINT_PAGES + ";");
+            stmt.execute("PRAGMA journal_size_limit=" + JOURNAL_SIZE_LIMIT + ";");
+        }
+        for (int i = 0; i < READER_NUM; i++) {
+            Connection reader = DriverManager.getConnection(url, readOnlyConfig.toProperties());
+            setProgressHandler(reader);
+            ReadOnlyConnection readOnlyConnection = new ReadOnlyConnection(reader);
+            allReaders.add(readOnlyConnection);
+            readers.add(readOnlyConnection);
+        }
+    }
+
+    private static void setProgressHandler(Connection connection) throws SQLException {
+        ProgressHandler.setHandler(connection, PROGRESS_HANDLER_VM_CALLS, new ProgressHandler() {
+            @Override
+            protected int progress() {
+                BooleanSupplier condition = interruptCondition.get();
+                return condition != null && condition.getAsBoolean() ? 1 : 0;
+            }
+        });
+    }
+
+    /**
+     * 设置当前线程查询的中断条件，条件满足时正在执行的查询会立即以SQLException结束
+     * sqlite3_interrupt会中断连接上的所有语句，包括写入，所以只中断设置了条件的线程
+     *
+     * @param condition 中断条件
+     */
+    public static void setInterruptCondition(BooleanSupplier condition) {
+        interruptCondition.set(condition);
+    }
+
+    public static void clearInterruptCondition() {
+        interruptCondition.remove();
+    }
+
+    /**
+     * 将WAL中的内容写回数据库文件，不等待正在搜索的只读连接，只读连接快照之后的页下次再写回
+     * 自动检查点只在提交时执行，写入停止后WAL中剩余的内容需要定时写回
+     *
+     * @throws SQLException 失败
+     */
+    public static void checkpoint() throws SQLException {
+        try (Statement stmt = getStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(PASSIVE);");
+        }
     }
 
     public static void closeAll() {
         if (IsDebug.isDebug()) {
             System.err.println("正在关闭数据库连接");
         }
+        for (ReadOnlyConnection each : allReaders) {
+            each.closeConnection();
+        }
         try {
             conn.close();
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         }
     }
+
+    /**
+     * 只读连接，同一时间只会被一个线程使用，编译过的语句保存在连接中重复使用
+     */
+    public static class ReadOnlyConnection implements AutoCloseable {
+        private final Connection connection;
+        private final HashMap<String, PreparedStatement> statementCache = new HashMap<>();
+
+        private ReadOnlyConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * 获取已编译的语句，语句由连接管理，使用者只需要关闭ResultSet，不能关闭语句
+         *
+         * @param sql select语句
+         * @return 已编译的PreparedStatement
+         * @throws SQLException 失败
+         */
+        public PreparedStatement getPreparedStatement(String sql) throws SQLException {
+            PreparedStatement stmt = statementCache.get(sql);
+            if (stmt == null || stmt.isClosed()) {
+                stmt = connection.prepareStatement(sql);
+                statementCache.put(sql, stmt);
+            } else {
+                stmt.clearParameters();
+            }
+            return stmt;
+        }
+
+        /**
+         * 归还连接
+         */
+        @Override
+        public void close() {
+            readers.offer(this);
+        }
+
+        private void closeConnection() {
+            try {
+                for (PreparedStatement each : statementCache.values()) {
+                    each.close();
+                }
+                statementCache.clear();
+                connection.close();
+            } catch (SQLException throwables) {
+                throwables.printStackTrace();
+            }
+        }
+    }
 }
@@ -0,0 +1,160 @@
+package file.engine.utils.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.function.Consumer;
+
+/**
+ * 读取其他程序不断追加写入的文本文件，记录已经读取的位置
+ * 每次读取时才打开文件，不会阻止写入方追加或者重命名
+ * 文件全部读取完成并且超过一定大小后，将文件重命名为分段文件，读取完分段剩余的内容后删除，写入方下次追加时会重新创建文件
+ * 分段读取失败时保留分段，下次从失败的位置继续读取，多次失败后放弃分段中剩余的内容并删除
+ */
+public class FileTailer {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long ROTATE_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_SEGMENT_RETRY_NUM = 3;
+
+    private final Path file;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+    private long offset = 0;
+    private int segmentNum = 0;
+    //还未读取完成的分段，不为null时offset为分段中的位置
+    private Path segment = null;
+    private int segmentRetryNum = 0;
+
+    public FileTailer(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 读取新追加的完整行，最后一行没有换行符时认为还在写入，等待下次读取
+     *
+     * @param maxLines 最多读取的行数
+     * @param consumer 每一行的处理
+     * @return 读取的行数
+     * @throws IOException 读取失败
+     */
+    public int readLines(int maxLines, Consumer<String> consumer) throws IOException {
+        if (segment != null) {
+            //分段中的修改比文件中的更早，先读取完分段
+            return readSegment(consumer);
+        }
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < offset) {
+                //文件被外部删除后重新创建
+                offset = 0;
+            }
+            return readLines(channel, maxLines, false, consumer);
+        }
+    }
+
+    /**
+     * 文件已经全部读取并且超过大小限制时，重命名为分段文件，读取分段中剩余的内容后删除
+     * 写入方正在写入时重命名会失败，下次再试
+     *
+     * @param consumer 分段中剩余的行
+     */
+    public void rotateIfNeeded(Consumer<String> consumer) {
+        if (segment == null) {
+            try {
+                if (offset < ROTATE_SIZE || Files.size(file) != offset) {
+                    return;
+                }
+                Path newSegment = file.resolveSibling(file.getFileName() + "." + segmentNum);
+                Files.move(file, newSegment, StandardCopyOption.ATOMIC_MOVE);
+                segmentNum++;
+                segment = newSegment;
+                segmentRetryNum = 0;
+            } catch (IOException ignored) {
+                return;
+            }
+        }
+        try {
+            readSegment(consumer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 从offset开始读取分段中剩余的所有行，读取完成后删除分段，之后从文件开头读取新创建的文件
+     *
+     * @param consumer 分段中剩余的行
+     * @return 读取的行数
+     * @throws IOException 读取失败，分段保留到下次读取，失败次数过多时删除
+     */
+    private int readSegment(Consumer<String> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            int count = readLines(channel, Integer.MAX_VALUE, true, consumer);
+            finishSegment();
+            return count;
+        } catch (IOException e) {
+            segmentRetryNum++;
+            if (segmentRetryNum >= MAX_SEGMENT_RETRY_NUM) {
+                System.err.println("分段文件读取失败，放弃剩余内容：" + segment + "，位置：" + offset);
+                finishSegment();
+            }
+            throw e;
+        }
+    }
+
+    private void finishSegment() {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        segment = null;
+        offset = 0;
+    }
+
+    private int readLines(FileChannel channel, int maxLines, boolean isReadToEnd, Consumer<String> consumer) throws IOException {
+        int count = 0;
+        long position = offset;
+        lineBytes.reset();
+        while (count < maxLines) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining() && count < maxLines) {
+                byte b = buffer.get();
+                position++;
+                if (b == '\n') {
+                    consumer.accept(toLine());
+                    count++;
+                    offset = position;
+                } else {
+                    lineBytes.write(b);
+                }
+            }
+        }
+        if (isReadToEnd && lineBytes.size() > 0) {
+            consumer.accept(toLine());
+            count++;
+            offset = position;
+        }
+        lineBytes.reset();
+        return count;
+    }
+
+    private String toLine() {
+        String line = lineBytes.toString(StandardCharsets.UTF_8);
+        lineBytes.reset();
+        if (line.endsWith("\r")) {
+            return line.substring(0, line.length() - 1);
+        }
+        return line;
+    }
+}